@@ -0,0 +1,32 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BackgroundTasks runs file work (parsing, probing, caching) off the FX
+ * thread on a small pool of daemon threads, so a slow disk never blocks
+ * the user interface or keeps the application from exiting.
+ *
+ */
+final class BackgroundTasks {
+
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(POOL_SIZE, newThreadFactory("media-io"));
+
+    private BackgroundTasks () {
+    }
+
+    public static void execute (final Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    public static ThreadFactory newThreadFactory (final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return task->{
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javafx.util.Duration;
+
+/**
+ * The ChapterList holds the chapters of a media file, sorted by start
+ * time, and finds the chapter playing at a given time and those around
+ * it. Chapters come from a sidecar file next to the media if there is one,
+ * or else from the chapters stored in an MP4 container. How many chapters
+ * a container holds is remembered in the MetadataCache, so a container
+ * known to have none is not parsed again.
+ *
+ * A sidecar has the media's base name and the extension .chapters, and
+ * lists one chapter per line as a time and a title ("0:12:30 The Siege"),
+ * or uses the OGM pairs "CHAPTER01=00:12:30.000" and "CHAPTER01NAME=The
+ * Siege".
+ *
+ */
+class ChapterList {
+
+    public static final String SIDECAR_EXTENSION = ".chapters";
+    public static final ChapterList EMPTY = new ChapterList(new long[0], new String[0]);
+
+    private static final String OGM_PREFIX = "CHAPTER";
+    private static final String OGM_NAME_SUFFIX = "NAME";
+
+    private final long[] myStarts;
+    private final String[] myTitles;
+
+    /**
+     * Creates a list from chapter starts in milliseconds and their titles,
+     * which need not be sorted.
+     */
+    public ChapterList (final long[] starts, final String[] titles) {
+        Integer[] order = new Integer[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b)->Long.compare(starts[a], starts[b]));
+        myStarts = new long[starts.length];
+        myTitles = new String[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            myStarts[i] = starts[order[i]];
+            myTitles[i] = titles[order[i]];
+        }
+    }
+
+    /**
+     * Loads the chapters of the media from its sidecar, or failing that
+     * from its container. Returns EMPTY if it has none.
+     */
+    public static ChapterList load (final Path media) {
+        return load(media, MetadataCache.getShared());
+    }
+
+    public static ChapterList load (final Path media, final MetadataCache metadataCache) {
+        String name = media.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path sidecar = media.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + SIDECAR_EXTENSION);
+        try {
+            if (Files.isRegularFile(sidecar)) {
+                return readSidecar(sidecar);
+            }
+            MediaMetadata metadata = metadataCache.get(media);
+            if (metadata != null && metadata.getChapterCount() == 0) {
+                return EMPTY;
+            }
+            ChapterList chapters = new Mp4Parser(media).readChapters();
+            metadataCache.putChapterCount(media, chapters.size());
+            return chapters;
+        }
+        catch (IOException | RuntimeException e) {
+            return EMPTY;
+        }
+    }
+
+    public static ChapterList readSidecar (final Path sidecar) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        Map<String, Integer> ogmChapters = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int equals = line.indexOf('=');
+                if (equals > 0 && line.toUpperCase(Locale.ROOT).startsWith(OGM_PREFIX)) {
+                    String key = line.substring(0, equals).toUpperCase(Locale.ROOT);
+                    String value = line.substring(equals + 1).trim();
+                    if (key.endsWith(OGM_NAME_SUFFIX)) {
+                        Integer chapter = ogmChapters.get(key.substring(0, key.length() - OGM_NAME_SUFFIX.length()));
+                        if (chapter != null) {
+                            titles.set(chapter, value);
+                        }
+                    }
+                    else {
+                        long start = SubtitleParser.parseTime(value, 0, value.length());
+                        if (start >= 0) {
+                            ogmChapters.put(key, starts.size());
+                            starts.add(start);
+                            titles.add("");
+                        }
+                    }
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                long start = SubtitleParser.parseTime(line, 0, space < 0 ? line.length() : space);
+                if (start >= 0) {
+                    starts.add(start);
+                    titles.add(space < 0 ? "" : line.substring(space + 1).trim());
+                }
+            }
+        }
+        long[] startArray = new long[starts.size()];
+        for (int i = 0; i < startArray.length; i++) {
+            startArray[i] = starts.get(i);
+        }
+        return new ChapterList(startArray, titles.toArray(new String[0]));
+    }
+
+    public int size () {
+        return myStarts.length;
+    }
+
+    public Duration getStart (final int index) {
+        return Duration.millis(myStarts[index]);
+    }
+
+    public String getTitle (final int index) {
+        return myTitles[index];
+    }
+
+    /**
+     * Returns the chapter playing at the time, or -1 if the time is before
+     * the first chapter.
+     */
+    public int indexAt (final Duration time) {
+        int index = Arrays.binarySearch(myStarts, (long)time.toMillis());
+        if (index < 0) {
+            return -index - 2;
+        }
+        while (index + 1 < myStarts.length && myStarts[index + 1] == myStarts[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the chapter after the one playing at the time, or -1 if it
+     * is the last.
+     */
+    public int nextAfter (final Duration time) {
+        int next = indexAt(time) + 1;
+        return next < myStarts.length ? next : -1;
+    }
+
+    /**
+     * Returns the chapter a "previous" control should go to: the start of
+     * the chapter playing, unless it started less than the grace period
+     * ago, in which case the one before. Returns -1 if there is none.
+     */
+    public int previousBefore (final Duration time, final Duration grace) {
+        int current = indexAt(time);
+        if (current < 0) {
+            return -1;
+        }
+        if (time.toMillis() - myStarts[current] >= grace.toMillis() || current == 0) {
+            return current;
+        }
+        return current - 1;
+    }
+}
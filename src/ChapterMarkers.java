@@ -0,0 +1,124 @@
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Slider;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+/**
+ * The ChapterMarkers draw a tick for every chapter over a time slider. The
+ * slider is wrapped in a StackPane with one Canvas on top, so hundreds of
+ * chapters cost one node and one redraw when the list, the duration or
+ * the slider's size changes. The ticks are placed along the slider's
+ * track, and hovering over the slider shows the title of the chapter
+ * under the mouse.
+ *
+ */
+class ChapterMarkers extends StackPane {
+
+    private static final Color TICK_COLOR = Color.rgb(255, 255, 255, 0.85);
+    private static final Color TICK_OUTLINE = Color.rgb(0, 0, 0, 0.6);
+    private static final double TICK_WIDTH = 2;
+    private static final double TICK_HEIGHT = 10;
+
+    private final Slider mySlider;
+    private final Canvas myCanvas = new Canvas();
+    private final Tooltip myTooltip = new Tooltip();
+    private ChapterList myChapters = ChapterList.EMPTY;
+    private Duration myDuration = Duration.UNKNOWN;
+
+    public ChapterMarkers (final Slider slider) {
+        mySlider = slider;
+        myCanvas.setMouseTransparent(true);
+        myCanvas.setManaged(false);
+        getChildren().addAll(slider, myCanvas);
+        // the track is laid out by the slider's skin after this pane
+        slider.needsLayoutProperty().addListener((observable, wasNeeded, isNeeded)->{
+            if (!isNeeded) {
+                redraw();
+            }
+        });
+        slider.addEventFilter(MouseEvent.MOUSE_MOVED, event->showTitle(event));
+    }
+
+    public void setChapters (final ChapterList chapters, final Duration duration) {
+        myChapters = chapters == null ? ChapterList.EMPTY : chapters;
+        myDuration = duration;
+        if (myChapters.size() > 0) {
+            Tooltip.install(mySlider, myTooltip);
+        }
+        else {
+            Tooltip.uninstall(mySlider, myTooltip);
+        }
+        redraw();
+    }
+
+    public void setDuration (final Duration duration) {
+        if (!duration.equals(myDuration)) {
+            myDuration = duration;
+            redraw();
+        }
+    }
+
+    public ChapterList getChapters () {
+        return myChapters;
+    }
+
+    @Override
+    protected void layoutChildren () {
+        super.layoutChildren();
+        myCanvas.setWidth(getWidth());
+        myCanvas.setHeight(getHeight());
+        redraw();
+    }
+
+    private void redraw () {
+        GraphicsContext graphics = myCanvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, myCanvas.getWidth(), myCanvas.getHeight());
+        if (myChapters.size() == 0 || myDuration.isUnknown() || myDuration.lessThanOrEqualTo(Duration.ZERO)) {
+            return;
+        }
+        double[] track = getTrackSpan();
+        double top = (myCanvas.getHeight() - TICK_HEIGHT) / 2;
+        graphics.setFill(TICK_COLOR);
+        graphics.setStroke(TICK_OUTLINE);
+        graphics.setLineWidth(1);
+        for (int i = 0; i < myChapters.size(); i++) {
+            double fraction = myChapters.getStart(i).toMillis() / myDuration.toMillis();
+            if (fraction <= 0 || fraction >= 1) {
+                continue;
+            }
+            double x = Math.round(track[0] + fraction * track[1] - TICK_WIDTH / 2);
+            graphics.fillRect(x, top, TICK_WIDTH, TICK_HEIGHT);
+            graphics.strokeRect(x - 0.5, top - 0.5, TICK_WIDTH + 1, TICK_HEIGHT + 1);
+        }
+    }
+
+    /**
+     * Returns the left edge and the width of the slider's track in this
+     * pane, or the whole slider before its skin has laid the track out.
+     */
+    private double[] getTrackSpan () {
+        Node track = mySlider.lookup(".track");
+        if (track == null) {
+            return new double[] { mySlider.getLayoutX(), mySlider.getWidth() };
+        }
+        Bounds bounds = sceneToLocal(track.localToScene(track.getBoundsInLocal()));
+        return new double[] { bounds.getMinX(), bounds.getWidth() };
+    }
+
+    private void showTitle (final MouseEvent event) {
+        double[] track = getTrackSpan();
+        if (myChapters.size() == 0 || myDuration.isUnknown() || track[1] <= 0) {
+            return;
+        }
+        double x = sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
+        double fraction = Math.max(0, Math.min(1, (x - track[0]) / track[1]));
+        int chapter = myChapters.indexAt(myDuration.multiply(fraction));
+        myTooltip.setText(chapter < 0 ? "" : myChapters.getTitle(chapter));
+    }
+}
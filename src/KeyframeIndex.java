@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+import javafx.util.Duration;
+
+/**
+ * The KeyframeIndex holds the keyframes (sync samples) of a video track
+ * as two parallel primitive arrays: presentation times in milliseconds
+ * and byte offsets into the media file, both in ascending order.
+ *
+ * The SeekCoordinator uses it to snap scrubbing seeks to the nearest
+ * keyframe, which the decoder can reach without decoding any frames in
+ * between.
+ *
+ */
+class KeyframeIndex {
+
+    private final long[] myTimesMillis;
+    private final long[] myOffsets;
+
+    public KeyframeIndex (final long[] timesMillis, final long[] offsets) {
+        if (timesMillis.length != offsets.length) {
+            throw new IllegalArgumentException("times and offsets differ in length");
+        }
+        myTimesMillis = timesMillis;
+        myOffsets = offsets;
+    }
+
+    public int size () {
+        return myTimesMillis.length;
+    }
+
+    public long getTimeMillis (final int keyframe) {
+        return myTimesMillis[keyframe];
+    }
+
+    public long getOffset (final int keyframe) {
+        return myOffsets[keyframe];
+    }
+
+    /**
+     * Returns the index of the keyframe closest to the given time, or -1
+     * if the index is empty.
+     */
+    public int findNearest (final Duration time) {
+        if (myTimesMillis.length == 0) {
+            return -1;
+        }
+        long millis = (long)time.toMillis();
+        int found = Arrays.binarySearch(myTimesMillis, millis);
+        if (found >= 0) {
+            return found;
+        }
+        int after = -found - 1;
+        if (after == 0) {
+            return 0;
+        }
+        if (after == myTimesMillis.length) {
+            return after - 1;
+        }
+        return millis - myTimesMillis[after - 1] <= myTimesMillis[after] - millis ? after - 1 : after;
+    }
+
+    /**
+     * Returns the index of the last keyframe at or before the given time,
+     * or 0 if the time precedes every keyframe.
+     */
+    public int findAtOrBefore (final Duration time) {
+        int found = Arrays.binarySearch(myTimesMillis, (long)time.toMillis());
+        return found >= 0 ? found : Math.max(0, -found - 2);
+    }
+
+    public Duration snap (final Duration time) {
+        int keyframe = findNearest(time);
+        return keyframe < 0 ? time : Duration.millis(myTimesMillis[keyframe]);
+    }
+
+    long[] getTimesMillis () {
+        return myTimesMillis;
+    }
+
+    long[] getOffsets () {
+        return myOffsets;
+    }
+}
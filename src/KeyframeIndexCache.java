@@ -0,0 +1,135 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The KeyframeIndexCache keeps keyframe indexes on disk so a large file
+ * is only parsed the first time it is opened. Each index is stored in its
+ * own file, named after a hash of the media path, together with the path,
+ * size and modification time of the media it describes. A cached index
+ * whose media has changed is rebuilt.
+ *
+ * Cached indexes are memory-mapped and copied into their arrays in bulk.
+ *
+ */
+class KeyframeIndexCache {
+
+    private static final int MAGIC = 0x4b464931; // "KFI1"
+    private static final String CACHE_SUFFIX = ".kfi";
+    private static final Path DEFAULT_DIRECTORY =
+            Paths.get(System.getProperty("user.home"), ".shawtheater", "keyframes");
+    private static final KeyframeIndexCache SHARED = new KeyframeIndexCache(DEFAULT_DIRECTORY);
+
+    private final Path myDirectory;
+
+    public KeyframeIndexCache (final Path directory) {
+        myDirectory = directory;
+    }
+
+    public static KeyframeIndexCache getShared () {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached index of the media file, parsing the file and
+     * caching the result if there is no valid cached index. If the index
+     * cannot be cached, that is reported and the parsed index returned.
+     */
+    public KeyframeIndex load (final Path mediaFile) throws IOException {
+        Path media = mediaFile.toAbsolutePath();
+        Path cacheFile = getCacheFile(media);
+        long size = Files.size(media);
+        long modified = Files.getLastModifiedTime(media).toMillis();
+
+        if (Files.isRegularFile(cacheFile)) {
+            KeyframeIndex cached = read(cacheFile, media, size, modified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        KeyframeIndex index = new Mp4Parser(media).readKeyframeIndex();
+        try {
+            write(cacheFile, media, size, modified, index);
+        }
+        catch (IOException e) {
+            Reports.failed("cache the keyframe index of " + media, e);
+        }
+        return index;
+    }
+
+    private Path getCacheFile (final Path media) {
+        return myDirectory.resolve(Integer.toHexString(media.toString().hashCode()) + CACHE_SUFFIX);
+    }
+
+    /**
+     * Returns the index cached in the file, or null if the file is stale,
+     * truncated or unreadable so the index is built again.
+     */
+    private static KeyframeIndex read (final Path cacheFile, final Path media, final long size,
+                                       final long modified) {
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                return null;
+            }
+            byte[] path = new byte[buffer.getShort() & 0xffff];
+            buffer.get(path);
+            if (!media.toString().equals(new String(path, StandardCharsets.UTF_8))
+                    || buffer.getLong() != size || buffer.getLong() != modified) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / (2 * Long.BYTES)) {
+                return null;
+            }
+            long[] times = new long[count];
+            long[] offsets = new long[count];
+            buffer.asLongBuffer().get(times).get(offsets);
+            return new KeyframeIndex(times, offsets);
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void write (final Path cacheFile, final Path media, final long size, final long modified,
+                        final KeyframeIndex index) throws IOException {
+        Files.createDirectories(myDirectory);
+        Path temporary = Files.createTempFile(myDirectory, null, CACHE_SUFFIX);
+        try {
+            writeIndex(temporary, media, size, modified, index);
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeIndex (final Path file, final Path media, final long size, final long modified,
+                                    final KeyframeIndex index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            byte[] path = media.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(MAGIC);
+            out.writeShort(path.length);
+            out.write(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(index.size());
+            for (long time : index.getTimesMillis()) {
+                out.writeLong(time);
+            }
+            for (long offset : index.getOffsets()) {
+                out.writeLong(offset);
+            }
+        }
+    }
+}
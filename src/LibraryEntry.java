@@ -0,0 +1,52 @@
+import java.nio.file.Path;
+
+/**
+ * A LibraryEntry is one media file found by the MediaLibrary: its path,
+ * the size and modification time it had when it was scanned, and the
+ * MediaInfo read from its header, which is null if the header could not
+ * be read (for example an audio file, or a container other than MP4).
+ *
+ */
+class LibraryEntry {
+
+    private final Path myPath;
+    private final long mySize;
+    private final long myModified;
+    private final MediaInfo myInfo;
+
+    public LibraryEntry (final Path path, final long size, final long modified, final MediaInfo info) {
+        myPath = path;
+        mySize = size;
+        myModified = modified;
+        myInfo = info;
+    }
+
+    public Path getPath () {
+        return myPath;
+    }
+
+    public long getSize () {
+        return mySize;
+    }
+
+    public long getModified () {
+        return myModified;
+    }
+
+    public MediaInfo getInfo () {
+        return myInfo;
+    }
+
+    /**
+     * Returns whether the entry still describes a file of the given size
+     * and modification time.
+     */
+    public boolean matches (final long size, final long modified) {
+        return mySize == size && myModified == modified;
+    }
+
+    @Override
+    public String toString () {
+        return myPath + (myInfo == null ? "" : " (" + myInfo + ")");
+    }
+}
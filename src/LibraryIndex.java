@@ -0,0 +1,110 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.util.Duration;
+
+/**
+ * The LibraryIndex stores the entries of a MediaLibrary in one compact
+ * binary file. After a magic number and the entry count, each entry is
+ * its UTF-8 path (prefixed with its length), size, modification time and
+ * a flag telling whether a MediaInfo follows: duration in milliseconds
+ * (negative if unknown), width, height, frame rate, and the video and
+ * audio codecs as four-character codes (zero if absent). A typical entry
+ * takes well under 150 bytes, so the index of a large library loads with
+ * one mapping and a single pass.
+ *
+ * The file is replaced atomically, so a crash while saving leaves the
+ * previous index intact.
+ *
+ */
+final class LibraryIndex {
+
+    private static final int MAGIC = 0x4c494231; // "LIB1"
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private LibraryIndex () {
+    }
+
+    /**
+     * Reads the entries of the index, keyed by path. A missing or corrupt
+     * index reads as empty, which makes the next scan a full one.
+     */
+    public static Map<Path, LibraryEntry> read (final Path indexFile) {
+        Map<Path, LibraryEntry> entries = new HashMap<>();
+        if (!Files.isRegularFile(indexFile)) {
+            return entries;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                return entries;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] path = new byte[buffer.getShort() & 0xffff];
+                buffer.get(path);
+                long size = buffer.getLong();
+                long modified = buffer.getLong();
+                MediaInfo info = null;
+                if (buffer.get() != 0) {
+                    long duration = buffer.getLong();
+                    int width = buffer.getInt();
+                    int height = buffer.getInt();
+                    float frameRate = buffer.getFloat();
+                    String videoCodec = Mp4Parser.codecName(buffer.getInt());
+                    String audioCodec = Mp4Parser.codecName(buffer.getInt());
+                    info = new MediaInfo(duration < 0 ? Duration.UNKNOWN : Duration.millis(duration),
+                                         width, height, frameRate, videoCodec, audioCodec);
+                }
+                Path file = Paths.get(new String(path, StandardCharsets.UTF_8));
+                entries.put(file, new LibraryEntry(file, size, modified, info));
+            }
+            return entries;
+        }
+        catch (IOException | RuntimeException e) {
+            entries.clear();
+            return entries;
+        }
+    }
+
+    public static void write (final Path indexFile, final Collection<LibraryEntry> entries) throws IOException {
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, null, INDEX_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (LibraryEntry entry : entries) {
+                byte[] path = entry.getPath().toString().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(path.length);
+                out.write(path);
+                out.writeLong(entry.getSize());
+                out.writeLong(entry.getModified());
+                MediaInfo info = entry.getInfo();
+                out.writeBoolean(info != null);
+                if (info != null) {
+                    out.writeLong(info.getDuration().isUnknown() ? -1 : (long)info.getDuration().toMillis());
+                    out.writeInt(info.getWidth());
+                    out.writeInt(info.getHeight());
+                    out.writeFloat((float)info.getFrameRate());
+                    out.writeInt(Mp4Parser.codecType(info.getVideoCodec()));
+                    out.writeInt(Mp4Parser.codecType(info.getAudioCodec()));
+                }
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,120 @@
+import javafx.beans.InvalidationListener;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * The LoopController loops a PlaybackEngine without re-seeking or
+ * re-prerolling it. Looping uses the player's own cycle count, with the
+ * optional A/B loop points mapped onto its start and stop times, so the
+ * pipeline stays warm and wraps around by itself instead of reaching the
+ * end of the media.
+ *
+ * The loop configuration belongs to the controller and is applied to
+ * whichever player is attached. Each wrap is timed against the media
+ * time that should have passed, and the excess is reported as the loop
+ * latency: the stall the viewer actually sees at the loop point.
+ *
+ */
+class LoopController {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final InvalidationListener myTimeListener = observable->recordTime();
+    private PlaybackEngine myPlayer;
+    private boolean myLooping;
+    private Duration myLoopStart = Duration.ZERO;
+    private Duration myLoopEnd = Duration.UNKNOWN;
+    private long myLastUpdateNanos;
+    private double myLastUpdateMillis;
+    private boolean myRepeated;
+    private long myLoopCount;
+    private double myLastLoopLatencyMillis = Double.NaN;
+
+    public void attach (final PlaybackEngine player) {
+        detach();
+        myPlayer = player;
+        player.currentTimeProperty().addListener(myTimeListener);
+        player.setOnRepeat(()->myRepeated = true);
+        apply();
+    }
+
+    public void detach () {
+        if (myPlayer != null) {
+            myPlayer.currentTimeProperty().removeListener(myTimeListener);
+            myPlayer.setOnRepeat(null);
+            myPlayer = null;
+        }
+    }
+
+    public void setLooping (final boolean looping) {
+        myLooping = looping;
+        apply();
+    }
+
+    public boolean isLooping () {
+        return myLooping;
+    }
+
+    /**
+     * Loops between the two times instead of over the whole media. An
+     * unknown end loops up to the end of the media.
+     */
+    public void setLoopPoints (final Duration start, final Duration end) {
+        myLoopStart = start;
+        myLoopEnd = end;
+        apply();
+    }
+
+    public void clearLoopPoints () {
+        setLoopPoints(Duration.ZERO, Duration.UNKNOWN);
+    }
+
+    public Duration getLoopStart () {
+        return myLoopStart;
+    }
+
+    public Duration getLoopEnd () {
+        return myLoopEnd;
+    }
+
+    public long getLoopCount () {
+        return myLoopCount;
+    }
+
+    /**
+     * Returns the stall at the last loop point in milliseconds, or NaN if
+     * the player has not looped yet.
+     */
+    public double getLastLoopLatencyMillis () {
+        return myLastLoopLatencyMillis;
+    }
+
+    private void apply () {
+        if (myPlayer == null) {
+            return;
+        }
+        myPlayer.setCycleCount(myLooping ? MediaPlayer.INDEFINITE : 1);
+        myPlayer.setStartTime(myLooping ? myLoopStart : Duration.ZERO);
+        Duration end = myLooping && !myLoopEnd.isUnknown() ? myLoopEnd : myPlayer.getDuration();
+        if (!end.isUnknown()) {
+            myPlayer.setStopTime(end);
+        }
+        myRepeated = false;
+    }
+
+    private void recordTime () {
+        long now = System.nanoTime();
+        double mediaMillis = myPlayer.getCurrentTime().toMillis();
+        if (myRepeated) {
+            myRepeated = false;
+            double rate = myPlayer.getCurrentRate() != 0 ? Math.abs(myPlayer.getCurrentRate()) : 1;
+            double expectedMillis = (myPlayer.getStopTime().toMillis() - myLastUpdateMillis
+                                     + mediaMillis - myPlayer.getStartTime().toMillis()) / rate;
+            double elapsedMillis = (now - myLastUpdateNanos) / NANOS_PER_MILLI;
+            myLastLoopLatencyMillis = Math.max(0, elapsedMillis - expectedMillis);
+            myLoopCount++;
+        }
+        myLastUpdateNanos = now;
+        myLastUpdateMillis = mediaMillis;
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * The MediaBarRefreshScheduler coalesces media clock updates so that the
+ * media bars of any number of VideoPlayers are refreshed at most once per
+ * frame. Players request a refresh whenever their current time changes,
+ * and the shared AnimationTimer runs every pending refresh on the next
+ * pulse. Pending refreshes are kept in a set in request order, so a
+ * repeated request costs O(1) however many players are pending.
+ *
+ * The refresh rate can be capped below the pulse rate, which is useful
+ * when many VideoPlayers are live in one Stage. The timer only runs while
+ * refreshes are pending. All methods must be called on the FX thread.
+ *
+ */
+class MediaBarRefreshScheduler {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final MediaBarRefreshScheduler SHARED = new MediaBarRefreshScheduler();
+
+    private Set<Runnable> myPending = new LinkedHashSet<>();
+    private Set<Runnable> myRunning = new LinkedHashSet<>();
+    private long myMinimumIntervalNanos = 0;
+    private long myLastRefreshNanos = 0;
+    private boolean myTimerRunning = false;
+    private long myLastBatchNanos;
+    private int myLastBatchSize;
+    private long myBatchCount;
+
+    private final AnimationTimer myTimer = new AnimationTimer() {
+        @Override
+        public void handle (long now) {
+            runPending(now);
+        }
+    };
+
+    public static MediaBarRefreshScheduler getShared () {
+        return SHARED;
+    }
+
+    /**
+     * Caps how often pending refreshes run. A rate of zero or less removes
+     * the cap so refreshes run once per pulse.
+     */
+    public void setMaxRefreshRate (final double refreshesPerSecond) {
+        myMinimumIntervalNanos = refreshesPerSecond > 0 ? (long)(NANOS_PER_SECOND / refreshesPerSecond) : 0;
+    }
+
+    public double getMaxRefreshRate () {
+        return myMinimumIntervalNanos > 0 ? NANOS_PER_SECOND / myMinimumIntervalNanos : 0;
+    }
+
+    /**
+     * Returns how long the last batch of refreshes took on the FX thread.
+     */
+    public long getLastBatchNanos () {
+        return myLastBatchNanos;
+    }
+
+    public int getLastBatchSize () {
+        return myLastBatchSize;
+    }
+
+    /**
+     * Returns how many batches of refreshes have run, so a caller polling
+     * getLastBatchNanos can tell a new batch from one it has seen.
+     */
+    public long getBatchCount () {
+        return myBatchCount;
+    }
+
+    public void requestRefresh (final Runnable refresh) {
+        myPending.add(refresh);
+        if (!myTimerRunning) {
+            myTimerRunning = true;
+            myTimer.start();
+        }
+    }
+
+    public void cancelRefresh (final Runnable refresh) {
+        myPending.remove(refresh);
+    }
+
+    private void runPending (final long now) {
+        if (now - myLastRefreshNanos < myMinimumIntervalNanos) {
+            return;
+        }
+        myLastRefreshNanos = now;
+
+        Set<Runnable> running = myPending;
+        myPending = myRunning;
+        myRunning = running;
+        long start = System.nanoTime();
+        for (Runnable refresh : running) {
+            refresh.run();
+        }
+        myLastBatchNanos = System.nanoTime() - start;
+        myLastBatchSize = running.size();
+        myBatchCount++;
+        running.clear();
+
+        if (myPending.isEmpty()) {
+            myTimerRunning = false;
+            myTimer.stop();
+        }
+    }
+}
@@ -0,0 +1,447 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * The MediaCache keeps copies of media from slow storage, such as a NAS
+ * mount, on a local disk. Files are copied ahead of playback, one at a
+ * time so the slow storage streams each sequentially, and are dropped in
+ * least recently used order whenever the copies would exceed the byte
+ * budget.
+ *
+ * Each copy is stored with the path, size and modification time of its
+ * source and the CRC32 of its contents. The checksum is computed while
+ * copying and checked against the copy before the copy is used; a copy
+ * from an earlier session is checked again, in the background, before
+ * its first use in this one. A copy whose source changed or whose
+ * checksum does not match is discarded and fetched again.
+ *
+ * Copies and their metadata are written to temporary files first and
+ * moved into place when complete; temporary files left behind by a crash,
+ * and metadata without a copy, are deleted when the cache is opened.
+ *
+ * Lookups never wait for a copy: until a verified copy exists they return
+ * null and the media is read from its source. Hits, misses and the time
+ * taken to warm each file are counted. All methods are thread safe.
+ *
+ */
+class MediaCache {
+
+    public static final long DEFAULT_BUDGET_BYTES = 8L << 30;
+    public static final Path DEFAULT_DIRECTORY =
+            Paths.get(System.getProperty("user.home"), ".shawtheater", "media");
+
+    private static final int MAGIC = 0x4d434531; // "MCE1"
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final String MEDIA_SUFFIX = ".media";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMPORARY_PREFIX = "partial-";
+
+    private final Path myDirectory;
+    private final long myBudgetBytes;
+    private final Map<Path, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, CompletableFuture<Path>> myPending = new HashMap<>();
+    private final ExecutorService myFetcher =
+            Executors.newSingleThreadExecutor(BackgroundTasks.newThreadFactory("media-cache"));
+    private final ByteBuffer myChunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+    private long myUsedBytes;
+    private long myHits;
+    private long myMisses;
+    private long myWarmedFiles;
+    private long myWarmedBytes;
+    private long myWarmNanos;
+    private long myLastWarmNanos;
+    private long myEvictions;
+    private long myIntegrityFailures;
+
+    private static final class Entry {
+        final Path myCopy;
+        final long mySourceSize;
+        final long mySourceModified;
+        final long myChecksum;
+        boolean myVerified;
+
+        Entry (final Path copy, final long sourceSize, final long sourceModified, final long checksum,
+               final boolean verified) {
+            myCopy = copy;
+            mySourceSize = sourceSize;
+            mySourceModified = sourceModified;
+            myChecksum = checksum;
+            myVerified = verified;
+        }
+    }
+
+    public MediaCache () throws IOException {
+        this(DEFAULT_DIRECTORY, DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * Opens the cache in the directory, taking over the copies left there
+     * by earlier sessions in the order they were last used and deleting
+     * what is left of unfinished ones.
+     */
+    public MediaCache (final Path directory, final long budgetBytes) throws IOException {
+        myDirectory = directory;
+        myBudgetBytes = budgetBytes;
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    /**
+     * Returns the verified local copy of the source, or null if there is
+     * none yet, in which case the source is warmed in the background.
+     */
+    public Path lookup (final Path source) {
+        Path media = source.toAbsolutePath();
+        synchronized (this) {
+            Entry entry = myEntries.get(media);
+            if (entry != null && entry.myVerified && isCurrent(entry, media)) {
+                myHits++;
+                return entry.myCopy;
+            }
+            myMisses++;
+        }
+        warm(media);
+        return null;
+    }
+
+    /**
+     * Returns the verified local copy of the source, or null if there is
+     * none, without counting a lookup or warming the source.
+     */
+    public synchronized Path peek (final Path source) {
+        Path media = source.toAbsolutePath();
+        Entry entry = myEntries.get(media);
+        return entry != null && entry.myVerified && isCurrent(entry, media) ? entry.myCopy : null;
+    }
+
+    /**
+     * Copies the source to the cache unless a valid copy exists, and
+     * completes with the copy, or with null if the source does not fit in
+     * the budget or could not be read.
+     */
+    public synchronized CompletableFuture<Path> warm (final Path source) {
+        Path media = source.toAbsolutePath();
+        Entry entry = myEntries.get(media);
+        if (entry != null && entry.myVerified && isCurrent(entry, media)) {
+            return CompletableFuture.completedFuture(entry.myCopy);
+        }
+        CompletableFuture<Path> pending = myPending.get(media);
+        if (pending == null) {
+            pending = CompletableFuture.supplyAsync(()->load(media), myFetcher);
+            myPending.put(media, pending);
+            pending.whenComplete((copy, error)->removePending(media));
+        }
+        return pending;
+    }
+
+    public void close () {
+        myFetcher.shutdownNow();
+    }
+
+    public synchronized long getUsedBytes () {
+        return myUsedBytes;
+    }
+
+    public long getBudgetBytes () {
+        return myBudgetBytes;
+    }
+
+    public synchronized long getHitCount () {
+        return myHits;
+    }
+
+    public synchronized long getMissCount () {
+        return myMisses;
+    }
+
+    public synchronized double getHitRatio () {
+        long lookups = myHits + myMisses;
+        return lookups > 0 ? (double)myHits / lookups : 0;
+    }
+
+    public synchronized long getWarmedFileCount () {
+        return myWarmedFiles;
+    }
+
+    public synchronized long getWarmedBytes () {
+        return myWarmedBytes;
+    }
+
+    /**
+     * Returns how long copying and verifying the last warmed file took.
+     */
+    public synchronized long getLastWarmNanos () {
+        return myLastWarmNanos;
+    }
+
+    public synchronized long getAverageWarmNanos () {
+        return myWarmedFiles > 0 ? myWarmNanos / myWarmedFiles : 0;
+    }
+
+    public synchronized long getEvictionCount () {
+        return myEvictions;
+    }
+
+    public synchronized long getIntegrityFailureCount () {
+        return myIntegrityFailures;
+    }
+
+    private synchronized void removePending (final Path media) {
+        myPending.remove(media);
+    }
+
+    /**
+     * Runs on the fetcher: verifies an unverified copy from an earlier
+     * session, or makes a new copy.
+     */
+    private Path load (final Path media) {
+        try {
+            Entry entry;
+            synchronized (this) {
+                entry = myEntries.get(media);
+            }
+            if (entry != null && isCurrent(entry, media)) {
+                if (checksum(entry.myCopy) == entry.myChecksum) {
+                    synchronized (this) {
+                        entry.myVerified = true;
+                    }
+                    Files.setLastModifiedTime(entry.myCopy, FileTime.fromMillis(System.currentTimeMillis()));
+                    return entry.myCopy;
+                }
+                synchronized (this) {
+                    myIntegrityFailures++;
+                }
+            }
+            if (entry != null) {
+                remove(media, entry);
+            }
+            return copy(media);
+        }
+        catch (IOException e) {
+            Reports.failed("cache " + media, e);
+            return null;
+        }
+    }
+
+    private Path copy (final Path media) throws IOException {
+        long start = System.nanoTime();
+        long size = Files.size(media);
+        long modified = Files.getLastModifiedTime(media).toMillis();
+        if (size > myBudgetBytes) {
+            return null;
+        }
+        String name = Integer.toHexString(media.toString().hashCode());
+        Path copy = myDirectory.resolve(name + MEDIA_SUFFIX);
+        Map.Entry<Path, Entry> collision = null;
+        synchronized (this) {
+            for (Map.Entry<Path, Entry> entry : myEntries.entrySet()) {
+                if (entry.getValue().myCopy.equals(copy)) {
+                    collision = entry;
+                }
+            }
+        }
+        if (collision != null) {
+            remove(collision.getKey(), collision.getValue());
+        }
+        makeRoom(size);
+
+        Path temporary = Files.createTempFile(myDirectory, TEMPORARY_PREFIX, MEDIA_SUFFIX);
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(media, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            myChunk.clear();
+            while (in.read(myChunk) >= 0 || myChunk.position() > 0) {
+                myChunk.flip();
+                crc.update(myChunk.duplicate());
+                out.write(myChunk);
+                myChunk.compact();
+            }
+        }
+        long checksum = crc.getValue();
+        if (Files.size(temporary) != size || checksum(temporary) != checksum) {
+            Files.deleteIfExists(temporary);
+            synchronized (this) {
+                myIntegrityFailures++;
+            }
+            throw new IOException("Copy does not match its source");
+        }
+        Files.move(temporary, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeMeta(myDirectory.resolve(name + META_SUFFIX), media, size, modified, checksum);
+
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            myEntries.put(media, new Entry(copy, size, modified, checksum, true));
+            myUsedBytes += size;
+            myWarmedFiles++;
+            myWarmedBytes += size;
+            myWarmNanos += elapsed;
+            myLastWarmNanos = elapsed;
+        }
+        return copy;
+    }
+
+    /**
+     * Drops least recently used copies until the given number of bytes
+     * fits in the budget.
+     */
+    private void makeRoom (final long bytes) {
+        List<Map.Entry<Path, Entry>> victims = new ArrayList<>();
+        synchronized (this) {
+            long used = myUsedBytes;
+            Iterator<Map.Entry<Path, Entry>> entries = myEntries.entrySet().iterator();
+            while (used + bytes > myBudgetBytes && entries.hasNext()) {
+                Map.Entry<Path, Entry> victim = entries.next();
+                victims.add(victim);
+                used -= victim.getValue().mySourceSize;
+            }
+        }
+        for (Map.Entry<Path, Entry> victim : victims) {
+            remove(victim.getKey(), victim.getValue());
+            synchronized (this) {
+                myEvictions++;
+            }
+        }
+    }
+
+    private void remove (final Path media, final Entry entry) {
+        synchronized (this) {
+            if (myEntries.remove(media) != null) {
+                myUsedBytes -= entry.mySourceSize;
+            }
+        }
+        String name = entry.myCopy.getFileName().toString();
+        try {
+            Files.deleteIfExists(entry.myCopy);
+            Files.deleteIfExists(myDirectory.resolve(name.replace(MEDIA_SUFFIX, META_SUFFIX)));
+        }
+        catch (IOException e) {
+            Reports.failed("remove cached copy " + entry.myCopy, e);
+        }
+    }
+
+    private static boolean isCurrent (final Entry entry, final Path media) {
+        try {
+            return Files.size(media) == entry.mySourceSize
+                    && Files.getLastModifiedTime(media).toMillis() == entry.mySourceModified
+                    && Files.isRegularFile(entry.myCopy);
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private long checksum (final Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            myChunk.clear();
+            while (in.read(myChunk) >= 0) {
+                myChunk.flip();
+                crc.update(myChunk);
+                myChunk.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void loadEntries () throws IOException {
+        List<Path> copies = new ArrayList<>();
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(myDirectory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(TEMPORARY_PREFIX)) {
+                    leftovers.add(file);
+                }
+                else if (name.endsWith(MEDIA_SUFFIX)) {
+                    copies.add(file);
+                }
+                else if (name.endsWith(META_SUFFIX)
+                        && !Files.exists(myDirectory.resolve(name.replace(META_SUFFIX, MEDIA_SUFFIX)))) {
+                    leftovers.add(file);
+                }
+            }
+        }
+        for (Path leftover : leftovers) {
+            Files.deleteIfExists(leftover);
+        }
+        copies.sort(Comparator.comparingLong(MediaCache::lastModified));
+        for (Path copy : copies) {
+            Path meta = myDirectory.resolve(copy.getFileName().toString().replace(MEDIA_SUFFIX, META_SUFFIX));
+            if (!readMeta(meta, copy)) {
+                Files.deleteIfExists(copy);
+                Files.deleteIfExists(meta);
+            }
+        }
+    }
+
+    private static long lastModified (final Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private boolean readMeta (final Path meta, final Path copy) {
+        try (FileChannel channel = FileChannel.open(meta, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                return false;
+            }
+            byte[] path = new byte[buffer.getShort() & 0xffff];
+            buffer.get(path);
+            long size = buffer.getLong();
+            long modified = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (Files.size(copy) != size) {
+                return false;
+            }
+            myEntries.put(Paths.get(new String(path, StandardCharsets.UTF_8)),
+                          new Entry(copy, size, modified, checksum, false));
+            myUsedBytes += size;
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void writeMeta (final Path meta, final Path media, final long size, final long modified,
+                            final long checksum) throws IOException {
+        Path temporary = Files.createTempFile(myDirectory, TEMPORARY_PREFIX, META_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            byte[] path = media.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(MAGIC);
+            out.writeShort(path.length);
+            out.write(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeLong(checksum);
+        }
+        Files.move(temporary, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
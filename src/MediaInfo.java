@@ -0,0 +1,60 @@
+import javafx.util.Duration;
+
+/**
+ * The MediaInfo describes a media file as read from its container header:
+ * duration, the dimensions of the video track and its average frame rate,
+ * and the codecs of the video and audio tracks as their sample format
+ * names (such as avc1 and mp4a). A codec is null if the file has no such
+ * track. It is available long before the MediaPlayer has prerolled the
+ * file.
+ *
+ */
+class MediaInfo {
+
+    private final Duration myDuration;
+    private final int myWidth;
+    private final int myHeight;
+    private final double myFrameRate;
+    private final String myVideoCodec;
+    private final String myAudioCodec;
+
+    public MediaInfo (final Duration duration, final int width, final int height, final double frameRate,
+                      final String videoCodec, final String audioCodec) {
+        myDuration = duration;
+        myWidth = width;
+        myHeight = height;
+        myFrameRate = frameRate;
+        myVideoCodec = videoCodec;
+        myAudioCodec = audioCodec;
+    }
+
+    public Duration getDuration () {
+        return myDuration;
+    }
+
+    public int getWidth () {
+        return myWidth;
+    }
+
+    public int getHeight () {
+        return myHeight;
+    }
+
+    public double getFrameRate () {
+        return myFrameRate;
+    }
+
+    public String getVideoCodec () {
+        return myVideoCodec;
+    }
+
+    public String getAudioCodec () {
+        return myAudioCodec;
+    }
+
+    @Override
+    public String toString () {
+        return String.format("%s %dx%d @ %.3f fps, %s/%s", myDuration, myWidth, myHeight, myFrameRate,
+                             myVideoCodec, myAudioCodec);
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MediaLibrary finds the media files under a set of root directories
+ * and keeps what their headers say in a LibraryIndex. A scan walks the
+ * roots on a ForkJoinPool, one task per directory, so large trees are
+ * listed and parsed in parallel; the pool has more threads than cores
+ * because most of the time is spent waiting on the disk.
+ *
+ * Rescans are incremental: a file whose size and modification time match
+ * its indexed entry keeps that entry without being opened, and files that
+ * have gone are dropped. Only MP4 headers are parsed; other playable files
+ * are listed without a MediaInfo. QuickTime (.mov) files are left out, as
+ * JavaFX cannot play them.
+ *
+ */
+class MediaLibrary {
+
+    public static final Path DEFAULT_INDEX_FILE =
+            Paths.get(System.getProperty("user.home"), ".shawtheater", "library.idx");
+
+    private static final Set<String> PLAYABLE_EXTENSIONS =
+            Set.of("mp4", "m4v", "m4a", "mp3", "flv", "fxm", "wav", "aif", "aiff");
+    private static final Set<String> PARSED_EXTENSIONS = Set.of("mp4", "m4v", "m4a");
+    private static final int IO_THREADS_PER_CORE = 4;
+
+    private final List<Path> myRoots;
+    private final Path myIndexFile;
+    private Map<Path, LibraryEntry> myEntries;
+    private long myLastScanNanos;
+    private long myLastParsedCount;
+    private long myLastReusedCount;
+    private long myLastFailedCount;
+
+    public MediaLibrary (final List<Path> roots) {
+        this(roots, DEFAULT_INDEX_FILE);
+    }
+
+    public MediaLibrary (final List<Path> roots, final Path indexFile) {
+        myRoots = new ArrayList<>();
+        for (Path root : roots) {
+            myRoots.add(root.toAbsolutePath().normalize());
+        }
+        myIndexFile = indexFile;
+        myEntries = LibraryIndex.read(indexFile);
+    }
+
+    public static boolean isPlayable (final Path file) {
+        return PLAYABLE_EXTENSIONS.contains(extension(file));
+    }
+
+    /**
+     * Scans every root, updates the entries and saves the index. Returns
+     * the number of files in the library.
+     */
+    public synchronized int scan () throws IOException {
+        long start = System.nanoTime();
+        Map<Path, LibraryEntry> previous = myEntries;
+        Map<Path, LibraryEntry> found = new ConcurrentHashMap<>();
+        AtomicLong parsed = new AtomicLong();
+        AtomicLong reused = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        int threads = Runtime.getRuntime().availableProcessors() * IO_THREADS_PER_CORE;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Path root : myRoots) {
+                if (Files.isDirectory(root)) {
+                    pool.invoke(new DirectoryScan(root, previous, found, parsed, reused, failed));
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        myEntries = found;
+        myLastParsedCount = parsed.get();
+        myLastReusedCount = reused.get();
+        myLastFailedCount = failed.get();
+        LibraryIndex.write(myIndexFile, found.values());
+        myLastScanNanos = System.nanoTime() - start;
+        return found.size();
+    }
+
+    /**
+     * Returns the entries of the library sorted by path, as of the last
+     * scan, or as loaded from the index before the first.
+     */
+    public synchronized List<LibraryEntry> getEntries () {
+        List<LibraryEntry> entries = new ArrayList<>(myEntries.values());
+        entries.sort(Comparator.comparing(LibraryEntry::getPath));
+        return Collections.unmodifiableList(entries);
+    }
+
+    public synchronized long getLastScanNanos () {
+        return myLastScanNanos;
+    }
+
+    /**
+     * Returns how many headers the last scan parsed because their files
+     * were new or changed.
+     */
+    public synchronized long getLastParsedCount () {
+        return myLastParsedCount;
+    }
+
+    /**
+     * Returns how many entries the last scan kept from the index.
+     */
+    public synchronized long getLastReusedCount () {
+        return myLastReusedCount;
+    }
+
+    public synchronized long getLastFailedCount () {
+        return myLastFailedCount;
+    }
+
+    private static String extension (final Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lists one directory, forking a scan for each subdirectory and
+     * reading the header of each new or changed media file.
+     */
+    private static class DirectoryScan extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path myDirectory;
+        private final Map<Path, LibraryEntry> myPrevious;
+        private final Map<Path, LibraryEntry> myFound;
+        private final AtomicLong myParsed;
+        private final AtomicLong myReused;
+        private final AtomicLong myFailed;
+
+        DirectoryScan (final Path directory, final Map<Path, LibraryEntry> previous,
+                       final Map<Path, LibraryEntry> found, final AtomicLong parsed, final AtomicLong reused,
+                       final AtomicLong failed) {
+            myDirectory = directory;
+            myPrevious = previous;
+            myFound = found;
+            myParsed = parsed;
+            myReused = reused;
+            myFailed = failed;
+        }
+
+        @Override
+        protected void compute () {
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(myDirectory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (IOException e) {
+                        myFailed.incrementAndGet();
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        DirectoryScan scan = new DirectoryScan(child, myPrevious, myFound, myParsed, myReused,
+                                                               myFailed);
+                        scan.fork();
+                        subdirectories.add(scan);
+                    }
+                    else if (attributes.isRegularFile() && isPlayable(child)) {
+                        add(child, attributes.size(), attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+            catch (IOException | DirectoryIteratorException e) {
+                myFailed.incrementAndGet();
+            }
+            for (DirectoryScan scan : subdirectories) {
+                scan.join();
+            }
+        }
+
+        private void add (final Path file, final long size, final long modified) {
+            LibraryEntry entry = myPrevious.get(file);
+            if (entry != null && entry.matches(size, modified)) {
+                myReused.incrementAndGet();
+            }
+            else {
+                entry = new LibraryEntry(file, size, modified, readInfo(file));
+                myParsed.incrementAndGet();
+            }
+            myFound.put(file, entry);
+        }
+
+        private MediaInfo readInfo (final Path file) {
+            if (!PARSED_EXTENSIONS.contains(extension(file))) {
+                return null;
+            }
+            try {
+                return new Mp4Parser(file).readMediaInfo();
+            }
+            catch (IOException | RuntimeException e) {
+                myFailed.incrementAndGet();
+                return null;
+            }
+        }
+    }
+}
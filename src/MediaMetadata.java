@@ -0,0 +1,34 @@
+/**
+ * The MediaMetadata is what the MetadataCache remembers about a media
+ * file: its MediaInfo, how many keyframes it has, and how many chapters
+ * its container holds.
+ *
+ */
+class MediaMetadata {
+
+    private final MediaInfo myInfo;
+    private final int myKeyframeCount;
+    private final int myChapterCount;
+
+    public MediaMetadata (final MediaInfo info, final int keyframeCount, final int chapterCount) {
+        myInfo = info;
+        myKeyframeCount = keyframeCount;
+        myChapterCount = chapterCount;
+    }
+
+    public MediaInfo getInfo () {
+        return myInfo;
+    }
+
+    public int getKeyframeCount () {
+        return myKeyframeCount;
+    }
+
+    /**
+     * Returns how many chapters the container holds, or -1 if it has not
+     * been read for them.
+     */
+    public int getChapterCount () {
+        return myChapterCount;
+    }
+}
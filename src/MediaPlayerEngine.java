@@ -0,0 +1,154 @@
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The MediaPlayerEngine is the PlaybackEngine of real media: it passes
+ * every call straight through to a JavaFX MediaPlayer.
+ *
+ */
+class MediaPlayerEngine implements PlaybackEngine {
+
+    private final MediaPlayer myPlayer;
+
+    public MediaPlayerEngine (final MediaPlayer player) {
+        myPlayer = player;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Status> statusProperty () {
+        return myPlayer.statusProperty();
+    }
+
+    @Override
+    public Status getStatus () {
+        return myPlayer.getStatus();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> currentTimeProperty () {
+        return myPlayer.currentTimeProperty();
+    }
+
+    @Override
+    public Duration getCurrentTime () {
+        return myPlayer.getCurrentTime();
+    }
+
+    @Override
+    public Duration getDuration () {
+        return myPlayer.getMedia().getDuration();
+    }
+
+    @Override
+    public String getSource () {
+        return myPlayer.getMedia().getSource();
+    }
+
+    @Override
+    public void play () {
+        myPlayer.play();
+    }
+
+    @Override
+    public void pause () {
+        myPlayer.pause();
+    }
+
+    @Override
+    public void stop () {
+        myPlayer.stop();
+    }
+
+    @Override
+    public void seek (final Duration time) {
+        myPlayer.seek(time);
+    }
+
+    @Override
+    public Duration getStartTime () {
+        return myPlayer.getStartTime();
+    }
+
+    @Override
+    public void setStartTime (final Duration time) {
+        myPlayer.setStartTime(time);
+    }
+
+    @Override
+    public Duration getStopTime () {
+        return myPlayer.getStopTime();
+    }
+
+    @Override
+    public void setStopTime (final Duration time) {
+        myPlayer.setStopTime(time);
+    }
+
+    @Override
+    public void setCycleCount (final int count) {
+        myPlayer.setCycleCount(count);
+    }
+
+    @Override
+    public double getRate () {
+        return myPlayer.getRate();
+    }
+
+    @Override
+    public void setRate (final double rate) {
+        myPlayer.setRate(rate);
+    }
+
+    @Override
+    public double getCurrentRate () {
+        return myPlayer.getCurrentRate();
+    }
+
+    @Override
+    public DoubleProperty volumeProperty () {
+        return myPlayer.volumeProperty();
+    }
+
+    @Override
+    public boolean isMute () {
+        return myPlayer.isMute();
+    }
+
+    @Override
+    public void setMute (final boolean mute) {
+        myPlayer.setMute(mute);
+    }
+
+    @Override
+    public void setOnReady (final Runnable handler) {
+        myPlayer.setOnReady(handler);
+    }
+
+    @Override
+    public void setOnPlaying (final Runnable handler) {
+        myPlayer.setOnPlaying(handler);
+    }
+
+    @Override
+    public void setOnPaused (final Runnable handler) {
+        myPlayer.setOnPaused(handler);
+    }
+
+    @Override
+    public void setOnEndOfMedia (final Runnable handler) {
+        myPlayer.setOnEndOfMedia(handler);
+    }
+
+    @Override
+    public void setOnRepeat (final Runnable handler) {
+        myPlayer.setOnRepeat(handler);
+    }
+
+    @Override
+    public MediaPlayer getMediaPlayer () {
+        return myPlayer;
+    }
+}
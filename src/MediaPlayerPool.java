@@ -0,0 +1,166 @@
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+/**
+ * The MediaPlayerPool owns the MediaPlayers of the theater. Players are
+ * kept with their media source so switching back to recent content reuses
+ * an already prerolled player, and idle players are disposed of in least
+ * recently used order whenever more players are live than the budget
+ * allows. Each live player holds native decoder resources, so the budget
+ * is what keeps a node running around the clock from growing until it
+ * crashes.
+ *
+ * Loading media into a VideoPlayer through the pool reuses the same
+ * controls for every item and hands the previous player back to the pool.
+ *
+ * A player handed out by acquire is in use until it is released, and is
+ * neither handed out again nor evicted while in use; acquiring a source
+ * whose players are all in use creates another player for it. All methods
+ * must be called on the FX thread.
+ *
+ */
+class MediaPlayerPool {
+
+    public static final int DEFAULT_MAX_LIVE_PLAYERS = 4;
+
+    private final Map<MediaPlayer, String> myPlayers = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<MediaPlayer> myInUse = new HashSet<>();
+    private int myMaxLivePlayers;
+    private long myCreatedCount;
+    private long myDisposedCount;
+
+    public MediaPlayerPool () {
+        this(DEFAULT_MAX_LIVE_PLAYERS);
+    }
+
+    public MediaPlayerPool (final int maxLivePlayers) {
+        setMaxLivePlayers(maxLivePlayers);
+    }
+
+    /**
+     * Sets how many players may stay live at once. Players in use are
+     * never disposed of, so the budget can be exceeded while they are.
+     */
+    public void setMaxLivePlayers (final int maxLivePlayers) {
+        if (maxLivePlayers < 1) {
+            throw new IllegalArgumentException("At least one live player is needed");
+        }
+        myMaxLivePlayers = maxLivePlayers;
+        evictIdlePlayers();
+    }
+
+    public int getMaxLivePlayers () {
+        return myMaxLivePlayers;
+    }
+
+    /**
+     * Returns an idle player for the media source, reusing a pooled one if
+     * there is one and creating one otherwise, and marks it in use.
+     */
+    public MediaPlayer acquire (final String source) {
+        MediaPlayer player = findIdlePlayer(source);
+        if (player == null) {
+            player = new MediaPlayer(new Media(source));
+            myCreatedCount++;
+        }
+        myPlayers.put(player, source);
+        myInUse.add(player);
+        evictIdlePlayers();
+        return player;
+    }
+
+    /**
+     * Switches the VideoPlayer to the media source and releases the player
+     * it was showing before. A VideoPlayer already showing the source
+     * keeps its player.
+     */
+    public void load (final VideoPlayer view, final String source) {
+        MediaPlayer previous = view.getMediaPlayer();
+        if (previous != null && source.equals(myPlayers.get(previous))) {
+            return;
+        }
+        view.setMediaPlayer(acquire(source));
+        release(previous);
+    }
+
+    /**
+     * Marks the player as no longer in use. It is paused and stays pooled
+     * until the budget forces it out.
+     */
+    public void release (final MediaPlayer player) {
+        if (!myInUse.remove(player)) {
+            return;
+        }
+        player.pause();
+        evictIdlePlayers();
+    }
+
+    /**
+     * Disposes of every pooled player, including the ones in use. Meant
+     * for shutting the theater down.
+     */
+    public void disposeAll () {
+        for (MediaPlayer player : myPlayers.keySet()) {
+            player.dispose();
+            myDisposedCount++;
+        }
+        myPlayers.clear();
+        myInUse.clear();
+    }
+
+    public int getLiveCount () {
+        return myPlayers.size();
+    }
+
+    public int getInUseCount () {
+        return myInUse.size();
+    }
+
+    public long getCreatedCount () {
+        return myCreatedCount;
+    }
+
+    public long getDisposedCount () {
+        return myDisposedCount;
+    }
+
+    /**
+     * Returns an idle pooled player for the source, disposing of the idle
+     * ones that have halted, or null if there is none.
+     */
+    private MediaPlayer findIdlePlayer (final String source) {
+        Iterator<Map.Entry<MediaPlayer, String>> players = myPlayers.entrySet().iterator();
+        while (players.hasNext()) {
+            Map.Entry<MediaPlayer, String> entry = players.next();
+            MediaPlayer player = entry.getKey();
+            if (!entry.getValue().equals(source) || myInUse.contains(player)) {
+                continue;
+            }
+            if (player.getStatus() != MediaPlayer.Status.HALTED) {
+                return player;
+            }
+            players.remove();
+            player.dispose();
+            myDisposedCount++;
+        }
+        return null;
+    }
+
+    private void evictIdlePlayers () {
+        Iterator<MediaPlayer> players = myPlayers.keySet().iterator();
+        while (myPlayers.size() > myMaxLivePlayers && players.hasNext()) {
+            MediaPlayer player = players.next();
+            if (!myInUse.contains(player)) {
+                players.remove();
+                player.dispose();
+                myDisposedCount++;
+            }
+        }
+    }
+}
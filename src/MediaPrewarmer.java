@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javafx.util.Duration;
+
+/**
+ * The MediaPrewarmer reads the parts of a media file a player needs first
+ * into the operating system's page cache before playback starts, so the
+ * decoder does not stall faulting them in one page at a time. For an MP4
+ * file these are the moov box and the media data up to the keyframe after
+ * the first few seconds, located with the Mp4Parser; for other files it
+ * is the beginning of the file.
+ *
+ * Regions are read sequentially in large chunks, which lets the disk read
+ * ahead, and the data read is thrown away. The bytes read for one file
+ * never exceed the byte budget.
+ *
+ */
+class MediaPrewarmer {
+
+    public static final Duration DEFAULT_PREWARM_DURATION = Duration.seconds(10);
+    public static final long DEFAULT_BYTE_BUDGET = 64L << 20;
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private Duration myPrewarmDuration = DEFAULT_PREWARM_DURATION;
+    private long myByteBudget = DEFAULT_BYTE_BUDGET;
+    private volatile long myLastBytes;
+    private volatile long myLastNanos;
+
+    public void setPrewarmDuration (final Duration duration) {
+        myPrewarmDuration = duration;
+    }
+
+    public Duration getPrewarmDuration () {
+        return myPrewarmDuration;
+    }
+
+    public void setByteBudget (final long bytes) {
+        myByteBudget = bytes;
+    }
+
+    public long getByteBudget () {
+        return myByteBudget;
+    }
+
+    /**
+     * Returns how many bytes the last prewarm read.
+     */
+    public long getLastBytes () {
+        return myLastBytes;
+    }
+
+    public long getLastNanos () {
+        return myLastNanos;
+    }
+
+    /**
+     * Prewarms the file on a background thread and completes with the
+     * number of bytes read.
+     */
+    public CompletableFuture<Long> prewarm (final Path file) {
+        return CompletableFuture.supplyAsync(()->{
+            try {
+                return prewarmNow(file);
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BackgroundTasks::execute);
+    }
+
+    /**
+     * Prewarms the file on the calling thread and returns the number of
+     * bytes read.
+     */
+    public long prewarmNow (final Path file) throws IOException {
+        long start = System.nanoTime();
+        long budget = myByteBudget;
+        long read = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+            Mp4Parser parser = parse(file);
+            if (parser == null) {
+                read = readRange(channel, 0, budget, chunk);
+            }
+            else {
+                read = readRange(channel, parser.getMoovOffset(), Math.min(parser.getMoovSize(), budget), chunk);
+                long mediaStart = parser.getMdatOffset();
+                if (mediaStart >= 0 && read < budget) {
+                    long mediaEnd = findPrewarmEnd(parser, mediaStart + parser.getMdatSize());
+                    read += readRange(channel, mediaStart, Math.min(mediaEnd - mediaStart, budget - read), chunk);
+                }
+            }
+        }
+        myLastBytes = read;
+        myLastNanos = System.nanoTime() - start;
+        return read;
+    }
+
+    /**
+     * Reads the given region of the file through the chunk buffer so it
+     * ends up in the page cache, and returns the number of bytes read.
+     */
+    static long readRange (final FileChannel channel, final long offset, final long length,
+                           final ByteBuffer chunk) throws IOException {
+        long read = 0;
+        while (read < length) {
+            chunk.clear();
+            if (length - read < chunk.capacity()) {
+                chunk.limit((int)(length - read));
+            }
+            int count = channel.read(chunk, offset + read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private static Mp4Parser parse (final Path file) {
+        try {
+            return new Mp4Parser(file);
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the offset of the first keyframe after the prewarm duration,
+     * since the player reads up to there before it can show the frames
+     * before it, or the end of the media data if there is none.
+     */
+    private long findPrewarmEnd (final Mp4Parser parser, final long mediaEnd) {
+        try {
+            KeyframeIndex index = parser.readKeyframeIndex();
+            int keyframe = index.findAtOrBefore(myPrewarmDuration) + 1;
+            return keyframe < index.size() ? Math.min(index.getOffset(keyframe), mediaEnd) : mediaEnd;
+        }
+        catch (IOException | RuntimeException e) {
+            return mediaEnd;
+        }
+    }
+}
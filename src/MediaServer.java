@@ -0,0 +1,396 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MediaServer serves local media files to MediaPlayers over HTTP on
+ * the loopback interface. Files are published one by one and get a URL of
+ * their own, so nothing else on disk can be requested. Range requests are
+ * supported, which is how a player seeks in media it streams, and file
+ * contents go from the page cache to the socket with FileChannel.transferTo
+ * without ever being copied through the Java heap.
+ *
+ * Each request is measured from the moment its header is read: the
+ * latency until the response header is sent and the time until the last
+ * byte is sent. The most recent requests and running totals are kept for
+ * inspection.
+ *
+ */
+class MediaServer implements Closeable {
+
+    public static final int RECENT_REQUESTS = 64;
+
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final String MEDIA_PATH = "/media/";
+    private static final String CRLF = "\r\n";
+    private static final String HEADER_END = "\r\n\r\n";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "mp4", "video/mp4", "m4v", "video/x-m4v", "m4a", "audio/x-m4a", "mp3", "audio/mpeg",
+            "flv", "video/x-flv", "fxm", "video/x-javafx", "wav", "audio/x-wav", "aif", "audio/x-aiff",
+            "aiff", "audio/x-aiff");
+
+    private final ServerSocketChannel myServerChannel;
+    private final ExecutorService myConnections =
+            Executors.newCachedThreadPool(BackgroundTasks.newThreadFactory("media-http"));
+    private final Map<String, Path> myFiles = new ConcurrentHashMap<>();
+    private final AtomicInteger myNextId = new AtomicInteger();
+    private final ArrayDeque<RequestStats> myRecentRequests = new ArrayDeque<>();
+    private final AtomicLong myRequestCount = new AtomicLong();
+    private final AtomicLong myBytesServed = new AtomicLong();
+    private volatile MediaCache myCache;
+
+    /**
+     * The measurements of one served request.
+     */
+    public static final class RequestStats {
+
+        private final String myPath;
+        private final int myStatus;
+        private final long myOffset;
+        private final long myBytes;
+        private final long myLatencyNanos;
+        private final long myTotalNanos;
+
+        RequestStats (final String path, final int status, final long offset, final long bytes,
+                      final long latencyNanos, final long totalNanos) {
+            myPath = path;
+            myStatus = status;
+            myOffset = offset;
+            myBytes = bytes;
+            myLatencyNanos = latencyNanos;
+            myTotalNanos = totalNanos;
+        }
+
+        public String getPath () {
+            return myPath;
+        }
+
+        public int getStatus () {
+            return myStatus;
+        }
+
+        public long getOffset () {
+            return myOffset;
+        }
+
+        public long getBytes () {
+            return myBytes;
+        }
+
+        public long getLatencyNanos () {
+            return myLatencyNanos;
+        }
+
+        public long getTotalNanos () {
+            return myTotalNanos;
+        }
+
+        public double getMegabytesPerSecond () {
+            return myTotalNanos > 0 ? myBytes * 1000.0 / myTotalNanos : 0;
+        }
+
+        @Override
+        public String toString () {
+            return String.format("%d %s @%d: %d bytes, latency %.2f ms, %.1f MB/s", myStatus, myPath, myOffset,
+                                 myBytes, myLatencyNanos / 1e6, getMegabytesPerSecond());
+        }
+    }
+
+    /**
+     * Starts serving on the given loopback port; port 0 picks a free one.
+     */
+    public MediaServer (final int port) throws IOException {
+        myServerChannel = ServerSocketChannel.open();
+        myServerChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Thread acceptor = BackgroundTasks.newThreadFactory("media-http-accept").newThread(this::accept);
+        acceptor.start();
+    }
+
+    public int getPort () {
+        return myServerChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Makes the file available and returns the URL to create its Media
+     * from. The URL ends in the file's name, since Media recognizes the
+     * container by its extension.
+     */
+    public String publish (final Path file) {
+        String name = file.getFileName().toString();
+        String path = MEDIA_PATH + myNextId.incrementAndGet() + "/"
+                + URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+        myFiles.put(path, file);
+        String source = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort() + path;
+        MediaSources.registerServedFile(source, file);
+        return source;
+    }
+
+    /**
+     * Serves published files from their copies in the cache once they are
+     * there, and has the cache warm the files that are requested. Passing
+     * null serves every file from its source.
+     */
+    public void setCache (final MediaCache cache) {
+        myCache = cache;
+    }
+
+    public long getRequestCount () {
+        return myRequestCount.get();
+    }
+
+    public long getBytesServed () {
+        return myBytesServed.get();
+    }
+
+    /**
+     * Returns the most recent requests, oldest first.
+     */
+    public List<RequestStats> getRecentRequests () {
+        synchronized (myRecentRequests) {
+            return new ArrayList<>(myRecentRequests);
+        }
+    }
+
+    @Override
+    public void close () throws IOException {
+        myServerChannel.close();
+        myConnections.shutdownNow();
+    }
+
+    private void accept () {
+        while (myServerChannel.isOpen()) {
+            try {
+                SocketChannel connection = myServerChannel.accept();
+                myConnections.execute(()->serve(connection));
+            }
+            catch (ClosedChannelException e) {
+                return;
+            }
+            catch (IOException e) {
+                Reports.failed("accept a media server connection", e);
+            }
+        }
+    }
+
+    /**
+     * Answers requests on the connection until the client closes it or
+     * asks for it to be closed.
+     */
+    private void serve (final SocketChannel connection) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_BYTES);
+        try (SocketChannel channel = connection) {
+            boolean keepAlive = true;
+            while (keepAlive) {
+                String header = readHeader(channel, buffer);
+                if (header == null) {
+                    return;
+                }
+                keepAlive = respond(channel, header, System.nanoTime());
+            }
+        }
+        catch (IOException e) {
+            // the player closed the connection, which it does when it seeks
+        }
+    }
+
+    /**
+     * Reads one request header, keeping any bytes after it in the buffer
+     * for the next request. Returns null at the end of the stream.
+     */
+    private static String readHeader (final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+        while (true) {
+            String received = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+            int end = received.indexOf(HEADER_END);
+            if (end >= 0) {
+                int length = end + HEADER_END.length();
+                buffer.flip().position(length);
+                buffer.compact();
+                return received.substring(0, end);
+            }
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Request header too large");
+            }
+            if (channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Sends the response to one request and returns whether the
+     * connection stays open.
+     */
+    private boolean respond (final SocketChannel channel, final String header, final long start) throws IOException {
+        String[] lines = header.split(CRLF);
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length < 3) {
+            sendError(channel, 400, "Bad Request", null);
+            return false;
+        }
+        String method = requestLine[0];
+        String target = requestLine[1];
+        boolean keepAlive = !requestLine[2].equals("HTTP/1.0");
+        String range = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equals("range")) {
+                range = value;
+            }
+            else if (name.equals("connection")) {
+                keepAlive = !value.equalsIgnoreCase("close");
+            }
+        }
+
+        int query = target.indexOf('?');
+        String path = query >= 0 ? target.substring(0, query) : target;
+        Path file = myFiles.get(path);
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            sendError(channel, 405, "Method Not Allowed", "Allow: GET, HEAD");
+            return keepAlive;
+        }
+        if (file == null) {
+            sendError(channel, 404, "Not Found", null);
+            return keepAlive;
+        }
+        MediaCache cache = myCache;
+        Path copy = cache != null ? cache.lookup(file) : null;
+        if (copy != null) {
+            file = copy;
+        }
+
+        try (FileChannel content = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = content.size();
+            long first = 0;
+            long last = size - 1;
+            int status = 200;
+            if (range != null) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    sendError(channel, 416, "Range Not Satisfiable", "Content-Range: bytes */" + size);
+                    return keepAlive;
+                }
+                first = bounds[0];
+                last = bounds[1];
+                status = 206;
+            }
+            long length = last - first + 1;
+
+            StringBuilder response = new StringBuilder();
+            response.append("HTTP/1.1 ").append(status).append(status == 206 ? " Partial Content" : " OK").append(CRLF);
+            response.append("Content-Type: ").append(contentType(file)).append(CRLF);
+            response.append("Content-Length: ").append(length).append(CRLF);
+            if (status == 206) {
+                response.append("Content-Range: bytes ").append(first).append('-').append(last)
+                        .append('/').append(size).append(CRLF);
+            }
+            response.append("Accept-Ranges: bytes").append(CRLF);
+            response.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append(CRLF).append(CRLF);
+            writeFully(channel, ByteBuffer.wrap(response.toString().getBytes(StandardCharsets.ISO_8859_1)));
+            long latency = System.nanoTime() - start;
+
+            long sent = 0;
+            if (method.equals("GET")) {
+                while (sent < length) {
+                    long count = content.transferTo(first + sent, length - sent, channel);
+                    if (count == 0) {
+                        // the file shrank; the promised length cannot be sent, so drop the connection
+                        throw new IOException(file + " shrank while it was served");
+                    }
+                    sent += count;
+                }
+            }
+            record(new RequestStats(path, status, first, sent, latency, System.nanoTime() - start));
+        }
+        return keepAlive;
+    }
+
+    /**
+     * Returns the first and last byte of a single byte range, or null if
+     * the range cannot be satisfied. Only the first of several ranges is
+     * served.
+     */
+    static long[] parseRange (final String range, final long size) {
+        if (!range.startsWith("bytes=") || size == 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length());
+        int comma = spec.indexOf(',');
+        if (comma >= 0) {
+            spec = spec.substring(0, comma);
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String start = spec.substring(0, dash).trim();
+            String end = spec.substring(dash + 1).trim();
+            if (start.isEmpty()) {
+                long suffix = Long.parseLong(end);
+                return suffix > 0 ? new long[] { Math.max(0, size - suffix), size - 1 } : null;
+            }
+            long first = Long.parseLong(start);
+            long last = end.isEmpty() ? size - 1 : Math.min(Long.parseLong(end), size - 1);
+            return first < size && first <= last ? new long[] { first, last } : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentType (final Path file) {
+        String name = file.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static void sendError (final SocketChannel channel, final int status, final String reason,
+                                   final String extraHeader) throws IOException {
+        String response = "HTTP/1.1 " + status + " " + reason + CRLF
+                + (extraHeader != null ? extraHeader + CRLF : "")
+                + "Content-Length: 0" + CRLF + CRLF;
+        writeFully(channel, ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private static void writeFully (final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void record (final RequestStats stats) {
+        myRequestCount.incrementAndGet();
+        myBytesServed.addAndGet(stats.getBytes());
+        synchronized (myRecentRequests) {
+            if (myRecentRequests.size() == RECENT_REQUESTS) {
+                myRecentRequests.removeFirst();
+            }
+            myRecentRequests.addLast(stats);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MediaSources converts between the source strings that Media is created
+ * from and the local files behind them, for the parts of the theater that
+ * read media files directly.
+ *
+ */
+final class MediaSources {
+
+    private static final String FILE_SCHEME = "file";
+    private static final Map<String, Path> SERVED_FILES = new ConcurrentHashMap<>();
+
+    private MediaSources () {
+    }
+
+    /**
+     * Returns the local file behind a media source, or null if the source
+     * is not a readable file (for example a resource inside a jar). Files
+     * served by a MediaServer are found behind their URLs too.
+     */
+    public static Path toLocalFile (final String source) {
+        Path served = SERVED_FILES.get(source);
+        if (served != null) {
+            return Files.isRegularFile(served) ? served : null;
+        }
+        try {
+            URI uri = new URI(source);
+            if (!FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+                return null;
+            }
+            Path file = Paths.get(uri);
+            return Files.isRegularFile(file) ? file : null;
+        }
+        catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static String toSource (final Path file) {
+        return file.toUri().toString();
+    }
+
+    /**
+     * Records that the source is a URL through which the file is served.
+     */
+    static void registerServedFile (final String source, final Path file) {
+        SERVED_FILES.put(source, file);
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javafx.util.Duration;
+
+/**
+ * The MetadataCache remembers what the theater learned about each media
+ * file between runs, so a file opened before shows its duration and size
+ * without its header being parsed again. Everything lives in one
+ * memory-mapped file of fixed-width records, used as an open-address hash
+ * table keyed by a 64-bit hash of the media path. Opening the cache is a
+ * single mapping, and a lookup reads one or a few records straight from
+ * the mapping; nothing is deserialized up front.
+ *
+ * Each record holds the key, the size and modification time of the media
+ * (a record for a changed file is ignored), its MediaInfo, its keyframe
+ * count, and how many chapters its container holds, so a file without
+ * chapters is not searched for them again. The key is written last, so a
+ * record torn by a crash is never found. When the table gets too full it
+ * is rebuilt at twice the size into a new file, which then replaces the
+ * old one atomically.
+ *
+ */
+class MetadataCache {
+
+    public static final Path DEFAULT_FILE =
+            Paths.get(System.getProperty("user.home"), ".shawtheater", "metadata.db");
+
+    private static final int MAGIC = 0x4d444332; // "MDC2"
+    private static final int HEADER_SIZE = 16;
+    private static final int CAPACITY_POSITION = 4;
+    private static final int COUNT_POSITION = 8;
+    private static final int RECORD_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    // record layout
+    private static final int KEY = 0;
+    private static final int SIZE = 8;
+    private static final int MODIFIED = 16;
+    private static final int DURATION = 24;
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 36;
+    private static final int FRAME_RATE = 40;
+    private static final int VIDEO_CODEC = 44;
+    private static final int AUDIO_CODEC = 48;
+    private static final int KEYFRAMES = 52;
+    private static final int CHAPTERS = 56;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final MetadataCache SHARED = new MetadataCache(DEFAULT_FILE);
+
+    private final Path myFile;
+    private MappedByteBuffer myTable;
+    private int myCapacity;
+    private int myCount;
+    private boolean myDisabled;
+
+    public MetadataCache (final Path file) {
+        myFile = file;
+    }
+
+    public static MetadataCache getShared () {
+        return SHARED;
+    }
+
+    /**
+     * Returns what is remembered about the media file, or null if nothing
+     * is, or the file changed since.
+     */
+    public synchronized MediaMetadata get (final Path media) {
+        try {
+            if (!open()) {
+                return null;
+            }
+            Path path = media.toAbsolutePath();
+            int record = find(key(path));
+            if (record < 0 || !matches(record, path)) {
+                return null;
+            }
+            return readRecord(record);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the header information and keyframe count of the media
+     * file, keeping its chapter count if the file is unchanged.
+     */
+    public synchronized void put (final Path media, final MediaInfo info, final int keyframeCount) {
+        try {
+            Path path = media.toAbsolutePath();
+            int record = prepareRecord(path);
+            if (record < 0) {
+                return;
+            }
+            myTable.putLong(record + DURATION, info.getDuration().isUnknown() ? -1 : (long)info.getDuration().toMillis());
+            myTable.putInt(record + WIDTH, info.getWidth());
+            myTable.putInt(record + HEIGHT, info.getHeight());
+            myTable.putFloat(record + FRAME_RATE, (float)info.getFrameRate());
+            myTable.putInt(record + VIDEO_CODEC, Mp4Parser.codecType(info.getVideoCodec()));
+            myTable.putInt(record + AUDIO_CODEC, Mp4Parser.codecType(info.getAudioCodec()));
+            myTable.putInt(record + KEYFRAMES, keyframeCount);
+            publish(record, path);
+        }
+        catch (IOException e) {
+            Reports.failed("cache metadata of " + media, e);
+        }
+    }
+
+    /**
+     * Remembers how many chapters the media file's container holds. Does
+     * nothing unless the file's header information is remembered.
+     */
+    public synchronized void putChapterCount (final Path media, final int count) {
+        try {
+            if (!open()) {
+                return;
+            }
+            Path path = media.toAbsolutePath();
+            int record = find(key(path));
+            if (record >= 0 && matches(record, path)) {
+                // stored plus one, so a zeroed record reads as unknown
+                myTable.putInt(record + CHAPTERS, count + 1);
+            }
+        }
+        catch (IOException e) {
+            Reports.failed("cache chapters of " + media, e);
+        }
+    }
+
+    public synchronized int size () {
+        try {
+            return open() ? myCount : 0;
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Maps the table, creating it if needed. Returns false if the cache
+     * could not be opened, in which case it stays disabled for this run.
+     */
+    private boolean open () throws IOException {
+        if (myTable != null) {
+            return true;
+        }
+        if (myDisabled) {
+            return false;
+        }
+        try {
+            if (!isValid(myFile)) {
+                Files.createDirectories(myFile.toAbsolutePath().getParent());
+                create(myFile, INITIAL_CAPACITY);
+            }
+            map(myFile);
+            return true;
+        }
+        catch (IOException e) {
+            myDisabled = true;
+            myTable = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether the file is a table whose size fits its capacity.
+     */
+    private static boolean isValid (final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+                return false;
+            }
+            int capacity = header.getInt(CAPACITY_POSITION);
+            return capacity > 0 && Integer.bitCount(capacity) == 1
+                    && channel.size() == HEADER_SIZE + (long)capacity * RECORD_SIZE;
+        }
+    }
+
+    private void map (final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            myTable = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        myCapacity = myTable.getInt(CAPACITY_POSITION);
+        myCount = myTable.getInt(COUNT_POSITION);
+    }
+
+    private static void create (final Path file, final int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                                 HEADER_SIZE + (long)capacity * RECORD_SIZE);
+            table.putInt(CAPACITY_POSITION, capacity);
+            table.putInt(COUNT_POSITION, 0);
+            table.putInt(0, MAGIC);
+            table.force();
+        }
+    }
+
+    /**
+     * Returns the position of the record with the key, or of the empty
+     * record where it would go, or -1 if the table is full.
+     */
+    private int probe (final MappedByteBuffer table, final int capacity, final long key) {
+        int slot = (int)(key & (capacity - 1));
+        for (int i = 0; i < capacity; i++) {
+            int record = HEADER_SIZE + ((slot + i) & (capacity - 1)) * RECORD_SIZE;
+            long found = table.getLong(record + KEY);
+            if (found == key || found == 0) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private int find (final long key) {
+        int record = probe(myTable, myCapacity, key);
+        return record >= 0 && myTable.getLong(record + KEY) == key ? record : -1;
+    }
+
+    /**
+     * Returns the record to write the media file's information to, growing
+     * the table first if a new record would make it too full. A record for
+     * a changed file loses its chapter count.
+     */
+    private int prepareRecord (final Path path) throws IOException {
+        if (!open()) {
+            return -1;
+        }
+        long key = key(path);
+        int record = find(key);
+        if (record < 0 && myCount + 1 > myCapacity * MAX_LOAD) {
+            grow();
+        }
+        if (record < 0) {
+            record = probe(myTable, myCapacity, key);
+        }
+        if (record < 0) {
+            return -1;
+        }
+        if (myTable.getLong(record + KEY) != key || !matches(record, path)) {
+            for (int i = SIZE; i < RECORD_SIZE; i += Long.BYTES) {
+                myTable.putLong(record + i, 0);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Stamps the record with the media's size and modification time, then
+     * with its key, which makes it visible.
+     */
+    private void publish (final int record, final Path path) throws IOException {
+        myTable.putLong(record + SIZE, Files.size(path));
+        myTable.putLong(record + MODIFIED, Files.getLastModifiedTime(path).toMillis());
+        if (myTable.getLong(record + KEY) == 0) {
+            myTable.putLong(record + KEY, key(path));
+            myCount++;
+            myTable.putInt(COUNT_POSITION, myCount);
+        }
+    }
+
+    private void grow () throws IOException {
+        int capacity = myCapacity * 2;
+        Path temporary = Files.createTempFile(myFile.toAbsolutePath().getParent(), null, ".db");
+        create(temporary, capacity);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            for (int i = 0; i < myCapacity; i++) {
+                int from = HEADER_SIZE + i * RECORD_SIZE;
+                long key = myTable.getLong(from + KEY);
+                if (key == 0) {
+                    continue;
+                }
+                int to = probe(table, capacity, key);
+                for (int offset = 0; offset < RECORD_SIZE; offset += Long.BYTES) {
+                    table.putLong(to + offset, myTable.getLong(from + offset));
+                }
+            }
+            table.putInt(COUNT_POSITION, myCount);
+            table.force();
+        }
+        Files.move(temporary, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(myFile);
+    }
+
+    private boolean matches (final int record, final Path path) {
+        try {
+            return myTable.getLong(record + SIZE) == Files.size(path)
+                    && myTable.getLong(record + MODIFIED) == Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private MediaMetadata readRecord (final int record) {
+        long duration = myTable.getLong(record + DURATION);
+        MediaInfo info = new MediaInfo(duration < 0 ? Duration.UNKNOWN : Duration.millis(duration),
+                                       myTable.getInt(record + WIDTH), myTable.getInt(record + HEIGHT),
+                                       myTable.getFloat(record + FRAME_RATE),
+                                       Mp4Parser.codecName(myTable.getInt(record + VIDEO_CODEC)),
+                                       Mp4Parser.codecName(myTable.getInt(record + AUDIO_CODEC)));
+        return new MediaMetadata(info, myTable.getInt(record + KEYFRAMES), myTable.getInt(record + CHAPTERS) - 1);
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the path, never zero since zero
+     * marks an empty record.
+     */
+    static long key (final Path path) {
+        String name = path.toString();
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,553 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javafx.util.Duration;
+
+/**
+ * The Mp4Parser reads the structure of an MP4 (ISO base media) file
+ * without decoding any media. The top-level boxes are located with small
+ * positional reads, and only the moov box is memory-mapped, so a file of
+ * several gigabytes costs no more to open than the size of its header.
+ *
+ * The video track's sample tables (stts, stss, stsc, stsz and stco/co64)
+ * are walked once to build a KeyframeIndex. The movie and track headers
+ * (mvhd, tkhd and mdhd) give a MediaInfo without touching the tables. Edit lists and composition
+ * offsets are ignored, which places keyframes at their decode times.
+ *
+ * Chapters are read from a Nero chapter list (udta/chpl) in the moov box,
+ * or else from the text samples of a QuickTime chapter track, which are
+ * the only reads outside the header.
+ *
+ */
+class Mp4Parser {
+
+    private static final int MOOV = boxType("moov");
+    private static final int MVHD = boxType("mvhd");
+    private static final int TKHD = boxType("tkhd");
+    private static final int MDAT = boxType("mdat");
+    private static final int TRAK = boxType("trak");
+    private static final int MDIA = boxType("mdia");
+    private static final int MDHD = boxType("mdhd");
+    private static final int HDLR = boxType("hdlr");
+    private static final int MINF = boxType("minf");
+    private static final int STBL = boxType("stbl");
+    private static final int STTS = boxType("stts");
+    private static final int STSS = boxType("stss");
+    private static final int STSC = boxType("stsc");
+    private static final int STSZ = boxType("stsz");
+    private static final int STSD = boxType("stsd");
+    private static final int STCO = boxType("stco");
+    private static final int CO64 = boxType("co64");
+    private static final int VIDE = boxType("vide");
+    private static final int SOUN = boxType("soun");
+    private static final int UDTA = boxType("udta");
+    private static final int CHPL = boxType("chpl");
+    private static final int TREF = boxType("tref");
+    private static final int CHAP = boxType("chap");
+
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_HEADER_SIZE = 16;
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final int FIXED_POINT_SHIFT = 16;
+    private static final long NERO_UNITS_PER_MILLI = 10_000;
+    private static final int MAX_CHAPTER_TITLE_BYTES = 1024;
+
+    private final Path myFile;
+    private final long myFileSize;
+    private final ByteBuffer myMoov;
+    private long myMoovOffset = -1;
+    private long myMdatOffset = -1;
+    private long myMdatSize;
+
+    public Mp4Parser (final Path file) throws IOException {
+        myFile = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            myFileSize = channel.size();
+            long moovSize = locateTopLevelBoxes(channel);
+            if (myMoovOffset < 0) {
+                throw new IOException("No moov box in " + file);
+            }
+            if (moovSize > Integer.MAX_VALUE) {
+                throw new IOException("moov box too large in " + file);
+            }
+            myMoov = channel.map(FileChannel.MapMode.READ_ONLY, myMoovOffset, moovSize);
+        }
+    }
+
+    public Path getFile () {
+        return myFile;
+    }
+
+    public long getFileSize () {
+        return myFileSize;
+    }
+
+    public long getMoovOffset () {
+        return myMoovOffset;
+    }
+
+    public int getMoovSize () {
+        return myMoov.capacity();
+    }
+
+    public long getMdatOffset () {
+        return myMdatOffset;
+    }
+
+    public long getMdatSize () {
+        return myMdatSize;
+    }
+
+    /**
+     * Reads the duration of the movie, the dimensions and average frame
+     * rate of its first video track, and the codecs of its first video and
+     * audio tracks. Throws an IOException if the file has no video track.
+     */
+    public MediaInfo readMediaInfo () throws IOException {
+        int mvhd = fullBoxContent(requireChild(0, MVHD));
+        boolean version1 = myMoov.get(mvhd - FULL_BOX_HEADER_SIZE) == 1;
+        long timescale = Integer.toUnsignedLong(myMoov.getInt(mvhd + (version1 ? 16 : 8)));
+        long duration = version1 ? myMoov.getLong(mvhd + 20) : Integer.toUnsignedLong(myMoov.getInt(mvhd + 12));
+        Duration movieDuration = timescale == 0 ? Duration.UNKNOWN : Duration.millis(duration * 1000.0 / timescale);
+
+        int trak = findVideoTrack();
+        int tkhd = fullBoxContent(requireChild(trak, TKHD));
+        int dimensions = tkhd + (myMoov.get(tkhd - FULL_BOX_HEADER_SIZE) == 1 ? 84 : 72);
+        int width = myMoov.getInt(dimensions) >>> FIXED_POINT_SHIFT;
+        int height = myMoov.getInt(dimensions + 4) >>> FIXED_POINT_SHIFT;
+
+        int mdhd = fullBoxContent(requireChild(requireChild(trak, MDIA), MDHD));
+        boolean mdhdVersion1 = myMoov.get(mdhd - FULL_BOX_HEADER_SIZE) == 1;
+        long trackDuration = mdhdVersion1 ? myMoov.getLong(mdhd + 20) : Integer.toUnsignedLong(myMoov.getInt(mdhd + 12));
+        int stsz = requireChild(findVideoSampleTable(), STSZ);
+        long sampleCount = Integer.toUnsignedLong(myMoov.getInt(fullBoxContent(stsz) + 4));
+        double frameRate = trackDuration == 0 ? 0 : sampleCount * readTimescale(trak) / (double)trackDuration;
+
+        String videoCodec = readCodec(trak);
+        int audioTrak = findTrack(SOUN);
+        String audioCodec = audioTrak < 0 ? null : readCodec(audioTrak);
+
+        return new MediaInfo(movieDuration, width, height, frameRate, videoCodec, audioCodec);
+    }
+
+    /**
+     * Builds the keyframe index of the first video track. Throws an
+     * IOException if the file has no video track or its tables are
+     * malformed.
+     */
+    public KeyframeIndex readKeyframeIndex () throws IOException {
+        int stbl = findVideoSampleTable();
+        long timescale = readTimescale(findVideoTrack());
+
+        int stts = requireChild(stbl, STTS);
+        int stss = findChild(stbl, STSS);
+        int stsc = requireChild(stbl, STSC);
+        int stsz = requireChild(stbl, STSZ);
+        int chunkOffsets = findChild(stbl, STCO);
+        boolean largeOffsets = chunkOffsets < 0;
+        if (largeOffsets) {
+            chunkOffsets = requireChild(stbl, CO64);
+        }
+
+        int sampleCount = readSampleCount(stsz);
+        int uniformSize = myMoov.getInt(fullBoxContent(stsz));
+        int sizeTable = fullBoxContent(stsz) + 8;
+
+        int syncCount = stss < 0 ? sampleCount : readEntryCount(stss, 0, 4);
+        int syncTable = stss < 0 ? -1 : fullBoxContent(stss) + 4;
+        long[] times = new long[syncCount];
+        long[] offsets = new long[syncCount];
+
+        int timeEntries = readEntryCount(stts, 0, 8);
+        int timeEntry = fullBoxContent(stts) + 4;
+        int timeRemaining = timeEntries > 0 ? myMoov.getInt(timeEntry) : 0;
+        long decodeTime = 0;
+
+        int chunkEntries = readEntryCount(stsc, 0, 12);
+        int chunkEntry = fullBoxContent(stsc) + 4;
+        int chunkCount = readEntryCount(chunkOffsets, 0, largeOffsets ? 8 : 4);
+        int chunkTable = fullBoxContent(chunkOffsets) + 4;
+        int chunk = 0;
+        int samplesPerChunk = 0;
+        int remainingInChunk = 0;
+        long offset = 0;
+
+        int keyframes = 0;
+        for (int sample = 1; sample <= sampleCount && keyframes < syncCount; sample++) {
+            if (remainingInChunk == 0) {
+                chunk++;
+                if (chunk > chunkCount) {
+                    throw new IOException("Sample table overruns chunk table in " + myFile);
+                }
+                while (chunkEntries > 1 && myMoov.getInt(chunkEntry + 12) <= chunk) {
+                    chunkEntry += 12;
+                    chunkEntries--;
+                }
+                samplesPerChunk = myMoov.getInt(chunkEntry + 4);
+                remainingInChunk = samplesPerChunk;
+                offset = largeOffsets ? myMoov.getLong(chunkTable + (chunk - 1) * 8)
+                                      : Integer.toUnsignedLong(myMoov.getInt(chunkTable + (chunk - 1) * 4));
+            }
+            while (timeRemaining == 0 && timeEntries > 1) {
+                timeEntry += 8;
+                timeEntries--;
+                timeRemaining = myMoov.getInt(timeEntry);
+            }
+
+            boolean sync = syncTable < 0 || myMoov.getInt(syncTable + keyframes * 4) == sample;
+            if (sync) {
+                times[keyframes] = decodeTime * MILLIS_PER_SECOND / timescale;
+                offsets[keyframes] = offset;
+                keyframes++;
+            }
+
+            offset += uniformSize != 0 ? uniformSize : Integer.toUnsignedLong(myMoov.getInt(sizeTable + (sample - 1) * 4));
+            decodeTime += Integer.toUnsignedLong(myMoov.getInt(timeEntry + 4));
+            timeRemaining--;
+            remainingInChunk--;
+        }
+
+        if (keyframes < syncCount) {
+            throw new IOException("Sync samples beyond the sample count in " + myFile);
+        }
+        return new KeyframeIndex(times, offsets);
+    }
+
+    /**
+     * Reads the chapters of the movie, from its Nero chapter list if it has
+     * one, or else from the chapter track another track refers to. Returns
+     * ChapterList.EMPTY if the movie has no chapters.
+     */
+    public ChapterList readChapters () throws IOException {
+        int chpl = findChild(findChild(0, UDTA), CHPL);
+        if (chpl >= 0) {
+            return readNeroChapters(chpl);
+        }
+        int trak = findChapterTrack();
+        return trak < 0 ? ChapterList.EMPTY : readChapterTrack(trak);
+    }
+
+    /**
+     * Reads a chpl box: a count, then for each chapter its start in units
+     * of 100 nanoseconds and its title prefixed with its length.
+     */
+    private ChapterList readNeroChapters (final int chpl) throws IOException {
+        int end = chpl + boxSize(chpl);
+        int position = fullBoxContent(chpl) + (myMoov.get(chpl + HEADER_SIZE) == 1 ? 4 : 0);
+        int count = myMoov.get(position++) & 0xff;
+        if (position + count * 9L > end) {
+            throw new IOException("Malformed chpl box in " + myFile);
+        }
+        long[] starts = new long[count];
+        String[] titles = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (position + 9 > end) {
+                throw new IOException("Malformed chpl box in " + myFile);
+            }
+            starts[i] = myMoov.getLong(position) / NERO_UNITS_PER_MILLI;
+            int length = myMoov.get(position + 8) & 0xff;
+            position += 9;
+            if (position + length > end) {
+                throw new IOException("Malformed chpl box in " + myFile);
+            }
+            byte[] title = new byte[length];
+            myMoov.get(position, title);
+            titles[i] = new String(title, StandardCharsets.UTF_8);
+            position += length;
+        }
+        return new ChapterList(starts, titles);
+    }
+
+    /**
+     * Returns the position of the track named by the first tref/chap
+     * reference of any track, or -1 if there is none.
+     */
+    private int findChapterTrack () {
+        for (int trak = findChild(0, TRAK); trak >= 0; trak = findSibling(trak, TRAK)) {
+            int chap = findChild(findChild(trak, TREF), CHAP);
+            if (chap >= 0 && boxSize(chap) >= HEADER_SIZE + 4) {
+                int id = myMoov.getInt(chap + HEADER_SIZE);
+                for (int track = findChild(0, TRAK); track >= 0; track = findSibling(track, TRAK)) {
+                    int tkhd = findChild(track, TKHD);
+                    boolean version1 = tkhd >= 0 && myMoov.get(tkhd + HEADER_SIZE) == 1;
+                    if (tkhd >= 0 && myMoov.getInt(fullBoxContent(tkhd) + (version1 ? 16 : 8)) == id) {
+                        return track;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the samples of a chapter track, each a title prefixed with its
+     * length in UTF-8 (or UTF-16 with a byte order mark), starting at the
+     * sample's decode time.
+     */
+    private ChapterList readChapterTrack (final int trak) throws IOException {
+        long timescale = readTimescale(trak);
+        int stbl = requireChild(requireChild(requireChild(trak, MDIA), MINF), STBL);
+        int sttsBox = requireChild(stbl, STTS);
+        int stscBox = requireChild(stbl, STSC);
+        int stszBox = requireChild(stbl, STSZ);
+        int chunkOffsetBox = findChild(stbl, STCO);
+        boolean largeOffsets = chunkOffsetBox < 0;
+        if (largeOffsets) {
+            chunkOffsetBox = requireChild(stbl, CO64);
+        }
+        int stts = fullBoxContent(sttsBox);
+        int stsc = fullBoxContent(stscBox);
+        int stsz = fullBoxContent(stszBox);
+        int chunkOffsets = fullBoxContent(chunkOffsetBox);
+
+        int sampleCount = readSampleCount(stszBox);
+        int uniformSize = myMoov.getInt(stsz);
+        long[] starts = new long[sampleCount];
+        String[] titles = new String[sampleCount];
+
+        int timeEntries = readEntryCount(sttsBox, 0, 8);
+        int timeEntry = stts + 4;
+        int timeRemaining = timeEntries > 0 ? myMoov.getInt(timeEntry) : 0;
+        long decodeTime = 0;
+        int chunkEntries = readEntryCount(stscBox, 0, 12);
+        int chunkEntry = stsc + 4;
+        int chunkCount = readEntryCount(chunkOffsetBox, 0, largeOffsets ? 8 : 4);
+        int chunk = 0;
+        int remainingInChunk = 0;
+        long offset = 0;
+        ByteBuffer sample = ByteBuffer.allocate(MAX_CHAPTER_TITLE_BYTES);
+        try (FileChannel channel = FileChannel.open(myFile, StandardOpenOption.READ)) {
+            for (int i = 0; i < sampleCount; i++) {
+                if (remainingInChunk == 0) {
+                    chunk++;
+                    if (chunk > chunkCount) {
+                        throw new IOException("Chapter samples overrun chunk table in " + myFile);
+                    }
+                    while (chunkEntries > 1 && myMoov.getInt(chunkEntry + 12) <= chunk) {
+                        chunkEntry += 12;
+                        chunkEntries--;
+                    }
+                    remainingInChunk = myMoov.getInt(chunkEntry + 4);
+                    offset = largeOffsets ? myMoov.getLong(chunkOffsets + 4 + (chunk - 1) * 8)
+                                          : Integer.toUnsignedLong(myMoov.getInt(chunkOffsets + 4 + (chunk - 1) * 4));
+                }
+                while (timeRemaining == 0 && timeEntries > 1) {
+                    timeEntry += 8;
+                    timeEntries--;
+                    timeRemaining = myMoov.getInt(timeEntry);
+                }
+                int size = uniformSize != 0 ? uniformSize : myMoov.getInt(stsz + 8 + i * 4);
+
+                sample.clear().limit(Math.min(size, MAX_CHAPTER_TITLE_BYTES));
+                channel.read(sample, offset);
+                starts[i] = decodeTime * MILLIS_PER_SECOND / timescale;
+                titles[i] = readChapterTitle(sample);
+
+                offset += size;
+                decodeTime += Integer.toUnsignedLong(myMoov.getInt(timeEntry + 4));
+                timeRemaining--;
+                remainingInChunk--;
+            }
+        }
+        return new ChapterList(starts, titles);
+    }
+
+    private static String readChapterTitle (final ByteBuffer sample) {
+        if (sample.position() < 2) {
+            return "";
+        }
+        int length = Math.min(sample.getShort(0) & 0xffff, sample.position() - 2);
+        boolean utf16 = length >= 2 && (sample.get(2) & 0xff) == 0xfe && (sample.get(3) & 0xff) == 0xff;
+        Charset charset = utf16 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8;
+        return new String(sample.array(), 2, length, charset);
+    }
+
+    private long locateTopLevelBoxes (final FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LARGE_HEADER_SIZE);
+        long moovSize = 0;
+        long position = 0;
+        while (position + HEADER_SIZE <= myFileSize) {
+            header.clear();
+            channel.read(header, position);
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            int type = header.getInt(4);
+            if (size == 1) {
+                size = header.getLong(HEADER_SIZE);
+            }
+            else if (size == 0) {
+                size = myFileSize - position;
+            }
+            if (size < HEADER_SIZE) {
+                throw new IOException("Malformed box at " + position + " in " + myFile);
+            }
+            if (type == MOOV) {
+                myMoovOffset = position;
+                moovSize = size;
+            }
+            else if (type == MDAT) {
+                myMdatOffset = position;
+                myMdatSize = size;
+            }
+            position += size;
+        }
+        return moovSize;
+    }
+
+    int findVideoTrack () throws IOException {
+        int trak = findTrack(VIDE);
+        if (trak < 0) {
+            throw new IOException("No video track in " + myFile);
+        }
+        return trak;
+    }
+
+    /**
+     * Returns the position of the first track with the given handler type,
+     * or -1 if there is none.
+     */
+    private int findTrack (final int handler) {
+        for (int trak = findChild(0, TRAK); trak >= 0; trak = findSibling(trak, TRAK)) {
+            int hdlr = findChild(findChild(trak, MDIA), HDLR);
+            if (hdlr >= 0 && myMoov.getInt(fullBoxContent(hdlr) + 4) == handler) {
+                return trak;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the format of the track's first sample description, such as
+     * avc1 or mp4a, or null if the track has none.
+     */
+    private String readCodec (final int trak) {
+        int stbl = findChild(findChild(findChild(trak, MDIA), MINF), STBL);
+        int stsd = findChild(stbl, STSD);
+        if (stsd < 0 || myMoov.getInt(fullBoxContent(stsd)) == 0) {
+            return null;
+        }
+        return boxName(myMoov.getInt(fullBoxContent(stsd) + 8));
+    }
+
+    private int findVideoSampleTable () throws IOException {
+        int mdia = requireChild(findVideoTrack(), MDIA);
+        return requireChild(requireChild(mdia, MINF), STBL);
+    }
+
+    long readTimescale (final int trak) throws IOException {
+        int mdhd = fullBoxContent(requireChild(requireChild(trak, MDIA), MDHD));
+        boolean version1 = myMoov.get(mdhd - FULL_BOX_HEADER_SIZE) == 1;
+        long timescale = Integer.toUnsignedLong(myMoov.getInt(mdhd + (version1 ? 16 : 8)));
+        if (timescale == 0) {
+            throw new IOException("Zero timescale in " + myFile);
+        }
+        return timescale;
+    }
+
+    /**
+     * Reads the entry count of the table in a full box, found the given
+     * number of bytes into its content. Throws an IOException if the count
+     * is negative or its entries would not fit in the rest of the box, so a
+     * corrupt count never sizes an array.
+     */
+    private int readEntryCount (final int box, final int skip, final int entrySize) throws IOException {
+        int table = fullBoxContent(box) + skip;
+        long end = Math.min(box + Integer.toUnsignedLong(boxSize(box)), myMoov.capacity());
+        int count = table + 4 <= end ? myMoov.getInt(table) : -1;
+        if (count < 0 || table + 4 + (long)count * entrySize > end) {
+            throw new IOException("Malformed " + boxName(myMoov.getInt(box + 4)) + " box in " + myFile);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the sample count of an stsz box. Samples of one uniform size
+     * have no table to check the count against, so they must fit in the
+     * file instead.
+     */
+    private int readSampleCount (final int stsz) throws IOException {
+        int uniformSize = myMoov.getInt(fullBoxContent(stsz));
+        int count = readEntryCount(stsz, 4, uniformSize == 0 ? 4 : 0);
+        if (Integer.toUnsignedLong(uniformSize) * count > myFileSize) {
+            throw new IOException("Malformed stsz box in " + myFile);
+        }
+        return count;
+    }
+
+    ByteBuffer getMoov () {
+        return myMoov;
+    }
+
+    int requireChild (final int box, final int type) throws IOException {
+        int child = findChild(box, type);
+        if (child < 0) {
+            throw new IOException("Missing " + boxName(type) + " box in " + myFile);
+        }
+        return child;
+    }
+
+    /**
+     * Returns the position of the first child of the given type inside the
+     * box at the given position of the moov buffer, or -1 if there is none.
+     */
+    int findChild (final int box, final int type) {
+        if (box < 0) {
+            return -1;
+        }
+        return scan(box + HEADER_SIZE, box + boxSize(box), type);
+    }
+
+    int findSibling (final int box, final int type) {
+        return scan(box + boxSize(box), myMoov.capacity(), type);
+    }
+
+    int fullBoxContent (final int box) {
+        return box + HEADER_SIZE + FULL_BOX_HEADER_SIZE;
+    }
+
+    int boxSize (final int box) {
+        return myMoov.getInt(box);
+    }
+
+    private int scan (final int start, final int end, final int type) {
+        int position = start;
+        while (position + HEADER_SIZE <= end) {
+            int size = myMoov.getInt(position);
+            if (myMoov.getInt(position + 4) == type) {
+                return position;
+            }
+            if (size < HEADER_SIZE) {
+                return -1;
+            }
+            position += size;
+        }
+        return -1;
+    }
+
+    static int boxType (final String name) {
+        return name.charAt(0) << 24 | name.charAt(1) << 16 | name.charAt(2) << 8 | name.charAt(3);
+    }
+
+    /**
+     * Returns the four-character code of a codec name as stored in binary
+     * indexes, or zero for no codec.
+     */
+    static int codecType (final String codec) {
+        return codec == null || codec.length() != 4 ? 0 : boxType(codec);
+    }
+
+    static String codecName (final int type) {
+        return type == 0 ? null : boxName(type);
+    }
+
+    static String boxName (final int type) {
+        return new String(new char[] {
+            (char)(type >>> 24), (char)(type >>> 16 & 0xff), (char)(type >>> 8 & 0xff), (char)(type & 0xff)
+        });
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.function.LongSupplier;
+
+import javafx.beans.value.ChangeListener;
+import javafx.scene.media.MediaPlayer.Status;
+
+/**
+ * The PlaybackClock tells where an engine's playback is at a given
+ * instant. A MediaPlayer refreshes its current time from a timer of its
+ * own, about every 100 ms, so a plain read can be that old, and two
+ * players read one after the other can be that far out of phase. The
+ * clock notes when the current time or the status last changed and, while
+ * the engine plays, extrapolates from there at the engine's current rate.
+ *
+ * The extrapolation is capped, so a player that stalls while playing is
+ * not taken to run on. Like the engine, it must be used on the FX thread.
+ *
+ */
+class PlaybackClock {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final long MAX_EXTRAPOLATION_NANOS = 250_000_000L;
+
+    private final PlaybackEngine myEngine;
+    private final LongSupplier myNanoTime;
+    private final ChangeListener<Object> myListener;
+    private long myChangedNanos;
+    private boolean myChangeSeen;
+
+    public PlaybackClock (final PlaybackEngine engine) {
+        this(engine, System::nanoTime);
+    }
+
+    /**
+     * Creates a clock that reads the time of each change from nanoTime,
+     * which must be the clock the instants passed to getTimeMillis come
+     * from.
+     */
+    public PlaybackClock (final PlaybackEngine engine, final LongSupplier nanoTime) {
+        myEngine = engine;
+        myNanoTime = nanoTime;
+        myListener = (observable, oldValue, newValue)->{
+            myChangedNanos = myNanoTime.getAsLong();
+            myChangeSeen = true;
+        };
+        engine.currentTimeProperty().addListener(myListener);
+        engine.statusProperty().addListener(myListener);
+    }
+
+    public PlaybackEngine getEngine () {
+        return myEngine;
+    }
+
+    /**
+     * Returns whether getTimeMillis knows where the engine is: it is not
+     * playing, or its time has changed since the clock was made.
+     */
+    public boolean isTimeKnown () {
+        return myChangeSeen || myEngine.getStatus() != Status.PLAYING;
+    }
+
+    /**
+     * Returns the playback position at the given instant of the clock's
+     * nanoTime. Until the engine's time first changes, this is the plain
+     * current time.
+     */
+    public double getTimeMillis (final long nowNanos) {
+        double millis = myEngine.getCurrentTime().toMillis();
+        if (myChangeSeen && myEngine.getStatus() == Status.PLAYING) {
+            long elapsed = Math.max(0, Math.min(MAX_EXTRAPOLATION_NANOS, nowNanos - myChangedNanos));
+            millis += elapsed / NANOS_PER_MILLI * myEngine.getCurrentRate();
+        }
+        return millis;
+    }
+
+    /**
+     * Stops following the engine.
+     */
+    public void dispose () {
+        myEngine.currentTimeProperty().removeListener(myListener);
+        myEngine.statusProperty().removeListener(myListener);
+    }
+}
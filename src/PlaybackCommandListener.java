@@ -0,0 +1,19 @@
+import javafx.util.Duration;
+
+/**
+ * A PlaybackCommandListener is told about every play, pause and seek the
+ * user makes in a VideoPlayer, so the command can be passed on, for
+ * example to the other players of a watch party.
+ *
+ */
+interface PlaybackCommandListener {
+
+    enum Command { PLAY, PAUSE, SEEK }
+
+    /**
+     * Called on the FX thread after the command was given to the player.
+     * The position is where the command takes effect: the current time
+     * for play and pause, the target for a seek.
+     */
+    void commandIssued (Command command, Duration position);
+}
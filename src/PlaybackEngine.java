@@ -0,0 +1,86 @@
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The PlaybackEngine is everything the VideoPlayer needs from whatever is
+ * decoding the media: its status and clock, transport controls, volume,
+ * looping and the event callbacks. It mirrors the parts of MediaPlayer
+ * the theater uses, so MediaPlayerEngine is a thin adapter, while other
+ * implementations (such as SimulatedPlaybackEngine) can drive the same
+ * controls without real media or a decoder.
+ *
+ * Like MediaPlayer, an engine is used from the FX thread and fires its
+ * callbacks there.
+ *
+ */
+interface PlaybackEngine {
+
+    ReadOnlyObjectProperty<Status> statusProperty ();
+
+    Status getStatus ();
+
+    ReadOnlyObjectProperty<Duration> currentTimeProperty ();
+
+    Duration getCurrentTime ();
+
+    /**
+     * Returns the duration of the media, or Duration.UNKNOWN until the
+     * engine is ready.
+     */
+    Duration getDuration ();
+
+    /**
+     * Returns the source the media was loaded from, or null if the engine
+     * has none.
+     */
+    String getSource ();
+
+    void play ();
+
+    void pause ();
+
+    void stop ();
+
+    void seek (Duration time);
+
+    Duration getStartTime ();
+
+    void setStartTime (Duration time);
+
+    Duration getStopTime ();
+
+    void setStopTime (Duration time);
+
+    void setCycleCount (int count);
+
+    double getRate ();
+
+    void setRate (double rate);
+
+    double getCurrentRate ();
+
+    DoubleProperty volumeProperty ();
+
+    boolean isMute ();
+
+    void setMute (boolean mute);
+
+    void setOnReady (Runnable handler);
+
+    void setOnPlaying (Runnable handler);
+
+    void setOnPaused (Runnable handler);
+
+    void setOnEndOfMedia (Runnable handler);
+
+    void setOnRepeat (Runnable handler);
+
+    /**
+     * Returns the MediaPlayer behind the engine, for showing it in a
+     * MediaView, or null if the engine does not decode real media.
+     */
+    MediaPlayer getMediaPlayer ();
+}
@@ -0,0 +1,328 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javafx.animation.PauseTransition;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The Playlist plays a list of media sources in one VideoPlayer without a
+ * gap between items. While an item plays, the next one is acquired from
+ * the MediaPlayerPool so its player prerolls in the background. At the
+ * end of the media the next player is started first, and the VideoPlayer
+ * only switches over once it is actually playing, so the last frame of
+ * the old item stays up until the new item has one to show. Given a
+ * MediaCache, the playlist also has the item playing and the few after it
+ * copied to the cache, rather than the whole list.
+ *
+ * Items can be played in order or shuffled (reshuffled on every pass),
+ * and the playlist can stop at the end, repeat the whole list or repeat
+ * one item. At the end of the list the VideoPlayer offers its replay, as
+ * it does for a single item. An item that fails to start playing within
+ * the switch timeout is reported and skipped. The latency of the last
+ * transition, from the end of one item to the next one playing, is kept
+ * for measurement. All methods must be called on the FX thread.
+ *
+ */
+class Playlist {
+
+    public enum RepeatMode { OFF, ALL, ONE }
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final Duration SWITCH_TIMEOUT = Duration.seconds(10);
+    private static final int CACHED_AHEAD = 2;
+
+    private final VideoPlayer myView;
+    private final MediaPlayerPool myPool;
+    private final List<String> mySources;
+    private final List<Integer> myOrder = new ArrayList<>();
+    private final Random myRandom = new Random();
+    private MediaCache myMediaCache;
+    private boolean myShuffle;
+    private RepeatMode myRepeatMode = RepeatMode.OFF;
+    private int myPosition = -1;
+    private MediaPlayer myNextPlayer;
+    private int myNextPosition = -1;
+    private long myEndOfMediaNanos;
+    private double myLastTransitionMillis = Double.NaN;
+    private int myFailedInARow;
+
+    public Playlist (final VideoPlayer view, final MediaPlayerPool pool, final List<String> sources) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("A playlist needs at least one item");
+        }
+        myView = view;
+        myPool = pool;
+        mySources = new ArrayList<>(sources);
+        resetOrder();
+        view.setOnEndOfMedia(()->advance());
+    }
+
+    /**
+     * Sets the cache to copy the upcoming local items to, which the view
+     * then prefetches seeks from. Passing null stops copying.
+     */
+    public void setMediaCache (final MediaCache cache) {
+        myMediaCache = cache;
+        myView.setMediaCache(cache);
+        warmUpcoming();
+    }
+
+    public void setShuffle (final boolean shuffle) {
+        myShuffle = shuffle;
+        resetOrder();
+        preloadNext();
+    }
+
+    public boolean isShuffle () {
+        return myShuffle;
+    }
+
+    public void setRepeatMode (final RepeatMode mode) {
+        myRepeatMode = mode;
+        preloadNext();
+    }
+
+    public RepeatMode getRepeatMode () {
+        return myRepeatMode;
+    }
+
+    public List<String> getSources () {
+        return Collections.unmodifiableList(mySources);
+    }
+
+    /**
+     * Returns the index in the source list of the item playing, or -1
+     * before the playlist has started.
+     */
+    public int getCurrentItem () {
+        return myPosition < 0 ? -1 : myOrder.get(myPosition);
+    }
+
+    /**
+     * Returns how long the last transition took, from the end of one item
+     * until the next one was playing, or NaN if none has happened.
+     */
+    public double getLastTransitionMillis () {
+        return myLastTransitionMillis;
+    }
+
+    /**
+     * Starts playing the first item.
+     */
+    public void play () {
+        myPosition = 0;
+        myPool.load(myView, mySources.get(myOrder.get(myPosition)));
+        myView.getMediaPlayer().play();
+        preloadNext();
+    }
+
+    /**
+     * Skips to the next item, as if the current one had ended.
+     */
+    public void next () {
+        advance();
+    }
+
+    /**
+     * Stops the playlist and hands its preloaded player back to the pool.
+     */
+    public void stop () {
+        myView.setOnEndOfMedia(null);
+        releaseNextPlayer();
+        myView.getMediaPlayer().stop();
+    }
+
+    private void advance () {
+        myEndOfMediaNanos = System.nanoTime();
+        MediaPlayer current = myView.getMediaPlayer();
+        if (myNextPlayer == null) {
+            myView.offerReplay();
+            return;
+        }
+        if (myNextPlayer == current) {
+            myNextPlayer = null;
+            current.seek(current.getStartTime());
+            current.play();
+            myPosition = myNextPosition;
+            recordTransition();
+            preloadNext();
+            return;
+        }
+
+        final MediaPlayer next = myNextPlayer;
+        myNextPlayer = null;
+        myPosition = myNextPosition;
+        if (myPosition == 0 && myRepeatMode == RepeatMode.ALL && myShuffle) {
+            reshuffleAfterFirst();
+        }
+        new PendingSwitch(next, current).start();
+    }
+
+    /**
+     * Waits for the next player to be playing before switching the view
+     * over to it, and gives up on it if it halts or times out.
+     */
+    private final class PendingSwitch implements ChangeListener<Status> {
+        private final MediaPlayer myNext;
+        private final MediaPlayer myPrevious;
+        private final PauseTransition myTimeout = new PauseTransition(SWITCH_TIMEOUT);
+
+        PendingSwitch (final MediaPlayer next, final MediaPlayer previous) {
+            myNext = next;
+            myPrevious = previous;
+        }
+
+        void start () {
+            myNext.statusProperty().addListener(this);
+            myTimeout.setOnFinished(event->finish(false));
+            myTimeout.play();
+            myNext.seek(myNext.getStartTime());
+            myNext.play();
+        }
+
+        @Override
+        public void changed (ObservableValue<? extends Status> observable, Status oldStatus, Status newStatus) {
+            if (newStatus == Status.PLAYING) {
+                finish(true);
+            }
+            else if (newStatus == Status.HALTED) {
+                finish(false);
+            }
+        }
+
+        private void finish (final boolean playing) {
+            myNext.statusProperty().removeListener(this);
+            myTimeout.stop();
+            if (playing) {
+                switchTo(myNext, myPrevious);
+            }
+            else {
+                skipFailed(myNext);
+            }
+        }
+    }
+
+    private void switchTo (final MediaPlayer next, final MediaPlayer previous) {
+        myFailedInARow = 0;
+        myView.setMediaPlayer(next);
+        myPool.release(previous);
+        recordTransition();
+        preloadNext();
+    }
+
+    /**
+     * Reports the item that did not start and moves on to the one after
+     * it, unless every item has failed in a row.
+     */
+    private void skipFailed (final MediaPlayer failed) {
+        String source = mySources.get(myOrder.get(myPosition));
+        Reports.report("Skipping " + source + ": it did not start playing"
+                + (failed.getError() == null ? "" : " (" + failed.getError().getMessage() + ")"));
+        failed.stop();
+        myPool.release(failed);
+        myFailedInARow++;
+        if (myFailedInARow >= mySources.size()) {
+            myFailedInARow = 0;
+            myView.offerReplay();
+            return;
+        }
+        preloadNext();
+        advance();
+    }
+
+    private void recordTransition () {
+        myLastTransitionMillis = (System.nanoTime() - myEndOfMediaNanos) / NANOS_PER_MILLI;
+    }
+
+    private void preloadNext () {
+        if (myPosition < 0) {
+            return;
+        }
+        releaseNextPlayer();
+        warmUpcoming();
+        myNextPosition = findNextPosition();
+        if (myNextPosition < 0) {
+            return;
+        }
+        // an item followed by itself replays on the player it is playing on
+        String source = mySources.get(myOrder.get(myNextPosition));
+        MediaPlayer current = myView.getMediaPlayer();
+        if (current != null && source.equals(current.getMedia().getSource())) {
+            myNextPlayer = current;
+        }
+        else {
+            myNextPlayer = myPool.acquire(source);
+        }
+    }
+
+    /**
+     * Copies the local files of the item playing and the ones after it
+     * to the cache, in the order they will play.
+     */
+    private void warmUpcoming () {
+        if (myMediaCache == null || myPosition < 0) {
+            return;
+        }
+        for (int i = 0; i <= CACHED_AHEAD && i < myOrder.size(); i++) {
+            int position = myPosition + i;
+            if (position >= myOrder.size()) {
+                if (myRepeatMode != RepeatMode.ALL) {
+                    return;
+                }
+                position -= myOrder.size();
+            }
+            Path file = MediaSources.toLocalFile(mySources.get(myOrder.get(position)));
+            if (file != null) {
+                myMediaCache.warm(file);
+            }
+        }
+    }
+
+    private void releaseNextPlayer () {
+        if (myNextPlayer != null && myNextPlayer != myView.getMediaPlayer()) {
+            myPool.release(myNextPlayer);
+        }
+        myNextPlayer = null;
+    }
+
+    private int findNextPosition () {
+        if (myRepeatMode == RepeatMode.ONE) {
+            return myPosition;
+        }
+        if (myPosition + 1 < myOrder.size()) {
+            return myPosition + 1;
+        }
+        return myRepeatMode == RepeatMode.ALL ? 0 : -1;
+    }
+
+    private void resetOrder () {
+        Integer current = myPosition < 0 ? null : myOrder.get(myPosition);
+        myOrder.clear();
+        for (int i = 0; i < mySources.size(); i++) {
+            myOrder.add(i);
+        }
+        if (myShuffle) {
+            Collections.shuffle(myOrder, myRandom);
+        }
+        if (current != null) {
+            myOrder.remove(current);
+            myOrder.add(0, current);
+            myPosition = 0;
+        }
+    }
+
+    /**
+     * Shuffles every item after the first, which is already preloaded and
+     * about to play, for the next pass through the list.
+     */
+    private void reshuffleAfterFirst () {
+        Collections.shuffle(myOrder.subList(1, myOrder.size()), myRandom);
+    }
+}
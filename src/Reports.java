@@ -0,0 +1,44 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Reports is the one path the theater reports through: problems it
+ * carries on past, such as a cache that could not be written, and the
+ * measurements the viewer prints. Reports go to standard error unless an
+ * application sends them elsewhere, or drops them, with setSink.
+ *
+ */
+final class Reports {
+
+    private static final AtomicReference<Consumer<String>> SINK = new AtomicReference<>(System.err::println);
+
+    private Reports () {
+    }
+
+    /**
+     * Sends every later report to the sink. Passing null drops them.
+     */
+    public static void setSink (final Consumer<String> sink) {
+        SINK.set(sink == null ? message->{} : sink);
+    }
+
+    public static void report (final String message) {
+        SINK.get().accept(message);
+    }
+
+    /**
+     * Reports a message formatted like String.format, with the root locale
+     * so numbers read the same everywhere.
+     */
+    public static void report (final String format, final Object... arguments) {
+        report(String.format(Locale.ROOT, format, arguments));
+    }
+
+    /**
+     * Reports that something could not be done, and why.
+     */
+    public static void failed (final String what, final Throwable error) {
+        report("Could not " + what + ": " + error.getMessage());
+    }
+}
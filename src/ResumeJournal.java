@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import javafx.util.Duration;
+
+/**
+ * The ResumeJournal remembers how far each media file was played, so a
+ * theater that restarts resumes where it left off. Positions are appended
+ * to one journal file as small checksummed records: the UTF-8 path
+ * (prefixed with its length), the position in milliseconds and a CRC32.
+ * On load the last record of each path wins, and a record torn by a crash
+ * ends the journal there.
+ *
+ * Recording only notes the latest position of each file in memory. A
+ * single writer thread commits what was noted once per commit interval,
+ * as one write and one sync however many files moved, so the FX thread
+ * never touches the disk. When the journal outgrows its budget it is
+ * compacted into a new file holding one record per file, which then
+ * replaces the old one atomically.
+ *
+ */
+class ResumeJournal {
+
+    public static final Path DEFAULT_FILE =
+            Paths.get(System.getProperty("user.home"), ".shawtheater", "resume.journal");
+
+    private static final int MAGIC = 0x52534a31; // "RSJ1"
+    private static final long COMMIT_INTERVAL_MILLIS = 1000;
+    private static final long MAX_JOURNAL_BYTES = 256 << 10;
+    private static final int RECORD_OVERHEAD = Short.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final ResumeJournal SHARED = new ResumeJournal(DEFAULT_FILE);
+
+    private final Path myFile;
+    private final ScheduledExecutorService myWriter =
+            Executors.newSingleThreadScheduledExecutor(BackgroundTasks.newThreadFactory("resume-journal"));
+    private final Map<Path, Long> myPending = new ConcurrentHashMap<>();
+    private final Map<Path, Long> myPositions = new ConcurrentHashMap<>();
+    private final AtomicBoolean myCommitScheduled = new AtomicBoolean();
+    private final CRC32 myChecksum = new CRC32();
+    private final Future<?> myLoad;
+    // used on the writer thread only
+    private FileChannel myChannel;
+    private ByteBuffer myBuffer = ByteBuffer.allocateDirect(4096);
+    private long myLiveBytes;
+    private volatile long myCommitCount;
+    private volatile long myCompactionCount;
+    private volatile boolean myClosed;
+
+    public ResumeJournal (final Path file) {
+        myFile = file;
+        myLoad = myWriter.submit(()->load());
+    }
+
+    public static ResumeJournal getShared () {
+        return SHARED;
+    }
+
+    /**
+     * Notes the position reached in the media file. Cheap enough to call
+     * on every clock update; only the latest position is committed.
+     */
+    public void record (final Path media, final Duration position) {
+        if (myClosed || media == null || position.isUnknown()) {
+            return;
+        }
+        myPending.put(media, (long)position.toMillis());
+        if (myCommitScheduled.compareAndSet(false, true)) {
+            myWriter.schedule(()->commit(), COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forgets the position of the media file, so it plays from the start
+     * next time, as after it was played to the end.
+     */
+    public void forget (final Path media) {
+        record(media, Duration.ZERO);
+    }
+
+    /**
+     * Returns the last position recorded for the media file, or null if
+     * there is none. Waits for the journal to be loaded, so it should not
+     * be called on the FX thread.
+     */
+    public Duration getPosition (final Path media) {
+        try {
+            myLoad.get();
+        }
+        catch (ExecutionException e) {
+            return null;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        Long millis = myPending.get(media);
+        if (millis == null) {
+            millis = myPositions.get(media);
+        }
+        return millis == null || millis == 0 ? null : Duration.millis(millis);
+    }
+
+    public long getCommitCount () {
+        return myCommitCount;
+    }
+
+    public long getCompactionCount () {
+        return myCompactionCount;
+    }
+
+    /**
+     * Commits whatever is still pending and closes the journal. Positions
+     * recorded afterwards are ignored.
+     */
+    public void close () {
+        if (myClosed) {
+            return;
+        }
+        myClosed = true;
+        try {
+            myWriter.submit(()->{
+                commit();
+                closeChannel();
+            }).get();
+        }
+        catch (ExecutionException e) {
+            Reports.failed("close the resume journal", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        myWriter.shutdown();
+    }
+
+    /**
+     * Reads every intact record, then cuts the journal after the last one
+     * so later records are appended cleanly.
+     */
+    private Void load () throws IOException {
+        Files.createDirectories(myFile.toAbsolutePath().getParent());
+        myChannel = FileChannel.open(myFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+        ByteBuffer journal = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, myChannel.size());
+        long end = 0;
+        if (journal.remaining() >= Integer.BYTES && journal.getInt() == MAGIC) {
+            end = journal.position();
+            while (journal.remaining() >= RECORD_OVERHEAD) {
+                int start = journal.position();
+                int length = journal.getShort() & 0xffff;
+                if (journal.remaining() < length + Long.BYTES + Integer.BYTES) {
+                    break;
+                }
+                byte[] path = new byte[length];
+                journal.get(path);
+                long millis = journal.getLong();
+                myChecksum.reset();
+                myChecksum.update(journal.duplicate().position(start).limit(journal.position()));
+                if ((int)myChecksum.getValue() != journal.getInt()) {
+                    break;
+                }
+                myPositions.put(Paths.get(new String(path, StandardCharsets.UTF_8)), millis);
+                end = journal.position();
+            }
+        }
+        if (end == 0) {
+            myChannel.truncate(0);
+            myChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip(), 0);
+            end = Integer.BYTES;
+        }
+        myChannel.truncate(end);
+        myChannel.position(end);
+        myPositions.values().removeIf(millis->millis == 0);
+        updateLiveBytes();
+        return null;
+    }
+
+    /**
+     * Appends a record for every file whose position moved since the last
+     * commit, then syncs once for the whole group.
+     */
+    private void commit () {
+        myCommitScheduled.set(false);
+        if (myChannel == null || myPending.isEmpty()) {
+            return;
+        }
+        try {
+            myBuffer.clear();
+            for (Map.Entry<Path, Long> entry : myPending.entrySet()) {
+                Path media = entry.getKey();
+                long millis = entry.getValue();
+                myPending.remove(media, millis);
+                Long previous = millis == 0 ? myPositions.remove(media) : myPositions.put(media, millis);
+                if (previous == null ? millis != 0 : previous != millis) {
+                    append(media, millis);
+                }
+            }
+            if (myBuffer.position() == 0) {
+                return;
+            }
+            myBuffer.flip();
+            while (myBuffer.hasRemaining()) {
+                myChannel.write(myBuffer);
+            }
+            myChannel.force(false);
+            myCommitCount++;
+            updateLiveBytes();
+            if (myChannel.size() > Math.max(MAX_JOURNAL_BYTES, 2 * myLiveBytes)) {
+                compact();
+            }
+        }
+        catch (IOException e) {
+            Reports.failed("write the resume journal", e);
+        }
+    }
+
+    private void append (final Path media, final long millis) {
+        byte[] path = media.toString().getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_OVERHEAD + path.length;
+        if (myBuffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(myBuffer.capacity() * 2, myBuffer.position() + size));
+            myBuffer.flip();
+            larger.put(myBuffer);
+            myBuffer = larger;
+        }
+        int start = myBuffer.position();
+        myBuffer.putShort((short)path.length);
+        myBuffer.put(path);
+        myBuffer.putLong(millis);
+        myChecksum.reset();
+        myChecksum.update(myBuffer.duplicate().position(start).limit(myBuffer.position()));
+        myBuffer.putInt((int)myChecksum.getValue());
+    }
+
+    /**
+     * Rewrites the journal with one record per file into a new file, and
+     * moves it over the old one.
+     */
+    private void compact () throws IOException {
+        Path temporary = Files.createTempFile(myFile.toAbsolutePath().getParent(), null, JOURNAL_SUFFIX);
+        myBuffer.clear();
+        myBuffer.putInt(MAGIC);
+        for (Map.Entry<Path, Long> entry : myPositions.entrySet()) {
+            append(entry.getKey(), entry.getValue());
+        }
+        myBuffer.flip();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            while (myBuffer.hasRemaining()) {
+                channel.write(myBuffer);
+            }
+            channel.force(false);
+        }
+        closeChannel();
+        Files.move(temporary, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        myChannel = FileChannel.open(myFile, StandardOpenOption.WRITE);
+        myChannel.position(myChannel.size());
+        myCompactionCount++;
+    }
+
+    private void updateLiveBytes () {
+        long bytes = Integer.BYTES;
+        for (Path media : myPositions.keySet()) {
+            bytes += RECORD_OVERHEAD + media.toString().length();
+        }
+        myLiveBytes = bytes;
+    }
+
+    private void closeChannel () {
+        if (myChannel == null) {
+            return;
+        }
+        try {
+            myChannel.close();
+        }
+        catch (IOException e) {
+            // the records were synced when committed
+        }
+        myChannel = null;
+    }
+}
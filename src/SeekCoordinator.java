@@ -0,0 +1,157 @@
+import javafx.beans.InvalidationListener;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The SeekCoordinator keeps slider scrubbing from flooding the media
+ * pipeline with seeks. While the user drags, only the latest target is
+ * kept and at most one seek is in flight at a time; a seek counts as
+ * settled when the player reports its next current time. When the drag
+ * ends, the final position is sought immediately.
+ *
+ * Once a KeyframeIndex is available, scrubbing seeks snap to the nearest
+ * keyframe so the decoder never has to decode up to the target. The final
+ * seek is always precise.
+ *
+ * Seeks requested before the player is ready (possible once the duration
+ * has been probed from the file header) are held back and issued when the
+ * player becomes ready.
+ *
+ * Issued and dropped seeks are counted, and the time from issuing a seek
+ * until it settles is measured, so scrubbing behavior can be measured on
+ * the target hardware.
+ *
+ */
+class SeekCoordinator {
+
+    private static final long SEEK_TIMEOUT_NANOS = 250_000_000L;
+
+    private final PlaybackEngine myPlayer;
+    private final InvalidationListener mySettleListener = observable->settleSeek();
+    private final InvalidationListener myStatusListener = observable->issueDeferredSeek();
+    private KeyframeIndex myKeyframeIndex;
+    private Duration myPendingTarget;
+    private Duration myDeferredTarget;
+    private boolean mySeekInFlight;
+    private long mySeekIssuedNanos;
+    private long myIssuedSeeks;
+    private long myDroppedSeeks;
+    private long mySettledSeeks;
+    private long mySeekLatencyNanos;
+    private long myLastSeekLatencyNanos;
+
+    public SeekCoordinator (final PlaybackEngine player) {
+        myPlayer = player;
+        player.currentTimeProperty().addListener(mySettleListener);
+        player.statusProperty().addListener(myStatusListener);
+    }
+
+    /**
+     * Stops listening to the player and drops any seeks not yet issued.
+     */
+    public void detach () {
+        myPlayer.currentTimeProperty().removeListener(mySettleListener);
+        myPlayer.statusProperty().removeListener(myStatusListener);
+        myPendingTarget = null;
+        myDeferredTarget = null;
+    }
+
+    /**
+     * Requests a seek while scrubbing. The target replaces any pending
+     * target and is issued once the seek in flight has settled.
+     */
+    public void requestSeek (final Duration target) {
+        if (myPendingTarget != null) {
+            myDroppedSeeks++;
+        }
+        myPendingTarget = myKeyframeIndex == null ? target : myKeyframeIndex.snap(target);
+        if (mySeekInFlight && System.nanoTime() - mySeekIssuedNanos > SEEK_TIMEOUT_NANOS) {
+            mySeekInFlight = false;
+        }
+        if (!mySeekInFlight) {
+            issuePendingSeek();
+        }
+    }
+
+    /**
+     * Seeks to the target right away, replacing any pending target. Used
+     * for the final precise seek when scrubbing ends.
+     */
+    public void seekNow (final Duration target) {
+        if (myPendingTarget != null) {
+            myDroppedSeeks++;
+            myPendingTarget = null;
+        }
+        issueSeek(target);
+    }
+
+    public void setKeyframeIndex (final KeyframeIndex index) {
+        myKeyframeIndex = index;
+    }
+
+    public KeyframeIndex getKeyframeIndex () {
+        return myKeyframeIndex;
+    }
+
+    public long getIssuedSeekCount () {
+        return myIssuedSeeks;
+    }
+
+    public long getDroppedSeekCount () {
+        return myDroppedSeeks;
+    }
+
+    /**
+     * Returns how long the last settled seek took from being issued to the
+     * player reporting its new time.
+     */
+    public long getLastSeekLatencyNanos () {
+        return myLastSeekLatencyNanos;
+    }
+
+    public long getAverageSeekLatencyNanos () {
+        return mySettledSeeks > 0 ? mySeekLatencyNanos / mySettledSeeks : 0;
+    }
+
+    private void settleSeek () {
+        if (mySeekInFlight) {
+            myLastSeekLatencyNanos = System.nanoTime() - mySeekIssuedNanos;
+            mySeekLatencyNanos += myLastSeekLatencyNanos;
+            mySettledSeeks++;
+        }
+        mySeekInFlight = false;
+        if (myPendingTarget != null) {
+            issuePendingSeek();
+        }
+    }
+
+    private void issueDeferredSeek () {
+        if (myDeferredTarget != null && isReady()) {
+            Duration target = myDeferredTarget;
+            myDeferredTarget = null;
+            issueSeek(target);
+        }
+    }
+
+    private boolean isReady () {
+        Status status = myPlayer.getStatus();
+        return status != Status.UNKNOWN && status != Status.HALTED;
+    }
+
+    private void issuePendingSeek () {
+        Duration target = myPendingTarget;
+        myPendingTarget = null;
+        issueSeek(target);
+    }
+
+    private void issueSeek (final Duration target) {
+        if (!isReady()) {
+            myDeferredTarget = target;
+            return;
+        }
+        mySeekInFlight = true;
+        mySeekIssuedNanos = System.nanoTime();
+        myIssuedSeeks++;
+        myPlayer.seek(target);
+    }
+}
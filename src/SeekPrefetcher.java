@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.scene.control.Slider;
+import javafx.scene.input.MouseEvent;
+import javafx.util.Duration;
+
+/**
+ * The SeekPrefetcher guesses where the user is about to seek from the
+ * mouse over the time slider, and reads that part of the media file into
+ * the page cache before the seek is issued. The time under the mouse is
+ * mapped to the keyframe the decoder will start from, and the bytes from
+ * that keyframe to the next one are read on a background thread.
+ *
+ * Only the latest guess matters: a newer one replaces a guess not yet
+ * started and cuts short the read in progress, and keyframes read
+ * recently are not read again. Prefetched, dropped and skipped guesses
+ * are counted so the effect on seek latency can be measured.
+ *
+ * Every prefetcher reads on one shared thread with one shared buffer, so
+ * a wall of players costs no more than one. Given a MediaCache, the local
+ * copy of the file is read when there is one, since that is what the
+ * player will be served.
+ *
+ */
+class SeekPrefetcher {
+
+    private static final int CHUNK_BYTES = 256 << 10;
+    private static final long MAX_REGION_BYTES = 8L << 20;
+    private static final int RECENT_KEYFRAMES = 64;
+
+    private static final ExecutorService READER =
+            Executors.newSingleThreadExecutor(BackgroundTasks.newThreadFactory("seek-prefetch"));
+    // only used on the reader thread
+    private static final ByteBuffer CHUNK = ByteBuffer.allocateDirect(CHUNK_BYTES);
+
+    private final AtomicReference<Region> myLatest = new AtomicReference<>();
+    private final AtomicBoolean myDrainScheduled = new AtomicBoolean();
+    private final AtomicLong myDroppedRegions = new AtomicLong();
+    private final Map<Region, Boolean> myRecent = new LinkedHashMap<Region, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<Region, Boolean> eldest) {
+            return size() > RECENT_KEYFRAMES;
+        }
+    };
+    private volatile MediaCache myMediaCache;
+    private Path myFile;
+    private KeyframeIndex myIndex;
+    private Duration myDuration = Duration.UNKNOWN;
+    private Region myLastRequested;
+    // written on the reader thread only
+    private volatile long myPrefetchedRegions;
+    private volatile long myPrefetchedBytes;
+    private volatile long mySkippedRegions;
+
+    /**
+     * A keyframe's share of a file, from its offset up to the next
+     * keyframe's.
+     */
+    private static final class Region {
+        final Path myFile;
+        final long myOffset;
+        final long myLength;
+
+        Region (final Path file, final long offset, final long length) {
+            myFile = file;
+            myOffset = offset;
+            myLength = length;
+        }
+
+        @Override
+        public boolean equals (Object other) {
+            if (!(other instanceof Region)) {
+                return false;
+            }
+            Region region = (Region)other;
+            return myOffset == region.myOffset && myFile.equals(region.myFile);
+        }
+
+        @Override
+        public int hashCode () {
+            return myFile.hashCode() * 31 + Long.hashCode(myOffset);
+        }
+    }
+
+    public SeekPrefetcher (final Slider slider) {
+        slider.addEventFilter(MouseEvent.MOUSE_MOVED, event->guess(slider, event));
+        slider.addEventFilter(MouseEvent.MOUSE_PRESSED, event->guess(slider, event));
+        slider.addEventFilter(MouseEvent.MOUSE_DRAGGED, event->guess(slider, event));
+    }
+
+    /**
+     * Sets the cache whose copies are read instead of the files they were
+     * copied from. Passing null reads the files themselves.
+     */
+    public void setMediaCache (final MediaCache cache) {
+        myMediaCache = cache;
+    }
+
+    /**
+     * Sets the media to prefetch from. Passing a null file turns
+     * prefetching off until new media is set.
+     */
+    public void setMedia (final Path file, final KeyframeIndex index, final Duration duration) {
+        myFile = file;
+        myIndex = index;
+        myDuration = duration;
+        myLastRequested = null;
+    }
+
+    /**
+     * Prefetches the region a seek to the given time will read, unless it
+     * was the last region asked for.
+     */
+    public void prefetch (final Duration time) {
+        if (myFile == null || myIndex == null || myIndex.size() == 0) {
+            return;
+        }
+        int keyframe = myIndex.findAtOrBefore(time);
+        long offset = myIndex.getOffset(keyframe);
+        long end = keyframe + 1 < myIndex.size() ? myIndex.getOffset(keyframe + 1) : offset + MAX_REGION_BYTES;
+        long length = end > offset ? Math.min(end - offset, MAX_REGION_BYTES) : MAX_REGION_BYTES;
+        Region region = new Region(myFile, offset, length);
+        if (region.equals(myLastRequested)) {
+            return;
+        }
+        myLastRequested = region;
+        if (myLatest.getAndSet(region) != null) {
+            myDroppedRegions.incrementAndGet();
+        }
+        if (myDrainScheduled.compareAndSet(false, true)) {
+            READER.execute(this::drain);
+        }
+    }
+
+    public long getPrefetchedRegionCount () {
+        return myPrefetchedRegions;
+    }
+
+    public long getPrefetchedBytes () {
+        return myPrefetchedBytes;
+    }
+
+    /**
+     * Returns how many guesses were replaced by newer ones before or while
+     * they were read.
+     */
+    public long getDroppedRegionCount () {
+        return myDroppedRegions.get();
+    }
+
+    /**
+     * Returns how many guesses were not read because they had been read
+     * recently.
+     */
+    public long getSkippedRegionCount () {
+        return mySkippedRegions;
+    }
+
+    private void guess (final Slider slider, final MouseEvent event) {
+        if (myDuration.isUnknown() || slider.getWidth() <= 0) {
+            return;
+        }
+        double fraction = Math.max(0, Math.min(1, event.getX() / slider.getWidth()));
+        prefetch(myDuration.multiply(fraction));
+    }
+
+    private void drain () {
+        myDrainScheduled.set(false);
+        Region region;
+        while ((region = myLatest.getAndSet(null)) != null) {
+            if (myRecent.containsKey(region)) {
+                mySkippedRegions++;
+                continue;
+            }
+            try {
+                if (read(region)) {
+                    myRecent.put(region, Boolean.TRUE);
+                    myPrefetchedRegions++;
+                }
+                else {
+                    myDroppedRegions.incrementAndGet();
+                }
+            }
+            catch (IOException e) {
+                // the file went away; the seek will report it
+            }
+        }
+    }
+
+    /**
+     * Reads the region chunk by chunk, and returns false if it was cut
+     * short by a newer guess.
+     */
+    private boolean read (final Region region) throws IOException {
+        MediaCache cache = myMediaCache;
+        Path copy = cache == null ? null : cache.peek(region.myFile);
+        try (FileChannel channel = FileChannel.open(copy != null ? copy : region.myFile, StandardOpenOption.READ)) {
+            long read = 0;
+            while (read < region.myLength) {
+                if (myLatest.get() != null) {
+                    return false;
+                }
+                long count = MediaPrewarmer.readRange(channel, region.myOffset + read,
+                                                      Math.min(CHUNK_BYTES, region.myLength - read), CHUNK);
+                if (count == 0) {
+                    break;
+                }
+                read += count;
+                myPrefetchedBytes += count;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The SimulatedPlaybackEngine is a PlaybackEngine without media. Its
+ * clock only moves when advance is called, and every callback runs
+ * synchronously inside the call that caused it, so a run is exactly
+ * repeatable. It follows the MediaPlayer rules the theater depends on:
+ * it starts UNKNOWN and becomes READY when told to, a play requested
+ * before then starts once ready, playback wraps between the start and
+ * stop times for each cycle, and end of media leaves it at the stop time.
+ *
+ * Thousands of these can drive VideoPlayers at once, which separates the
+ * cost of the user interface from the cost of decoding.
+ *
+ */
+class SimulatedPlaybackEngine implements PlaybackEngine {
+
+    private final ReadOnlyObjectWrapper<Status> myStatus = new ReadOnlyObjectWrapper<>(Status.UNKNOWN);
+    private final ReadOnlyObjectWrapper<Duration> myCurrentTime = new ReadOnlyObjectWrapper<>(Duration.ZERO);
+    private final DoubleProperty myVolume = new SimpleDoubleProperty(1.0);
+    private final Duration myDuration;
+    private final String mySource;
+    private Duration myStartTime = Duration.ZERO;
+    private Duration myStopTime;
+    private int myCycleCount = 1;
+    private int myCompletedCycles;
+    private double myRate = 1.0;
+    private boolean myMute;
+    private boolean myPlayRequested;
+    private long mySeekCount;
+    private Runnable myOnReady;
+    private Runnable myOnPlaying;
+    private Runnable myOnPaused;
+    private Runnable myOnEndOfMedia;
+    private Runnable myOnRepeat;
+
+    public SimulatedPlaybackEngine (final Duration duration) {
+        this(duration, null);
+    }
+
+    public SimulatedPlaybackEngine (final Duration duration, final String source) {
+        myDuration = duration;
+        myStopTime = duration;
+        mySource = source;
+    }
+
+    /**
+     * Finishes the simulated preroll: the engine becomes READY, fires its
+     * ready callback and starts playing if play was requested before.
+     */
+    public void makeReady () {
+        if (myStatus.get() != Status.UNKNOWN) {
+            return;
+        }
+        myStatus.set(Status.READY);
+        run(myOnReady);
+        if (myPlayRequested) {
+            myPlayRequested = false;
+            play();
+        }
+    }
+
+    /**
+     * Moves the clock forward by the given wall time, scaled by the rate,
+     * if the engine is playing.
+     */
+    public void advance (final Duration elapsed) {
+        if (myStatus.get() != Status.PLAYING) {
+            return;
+        }
+        double time = myCurrentTime.get().toMillis() + elapsed.toMillis() * myRate;
+        double start = myStartTime.toMillis();
+        double stop = myStopTime.toMillis();
+        while (time >= stop) {
+            boolean lastCycle = myCycleCount != MediaPlayer.INDEFINITE && myCompletedCycles + 1 >= myCycleCount;
+            if (lastCycle || stop <= start) {
+                myCurrentTime.set(myStopTime);
+                run(myOnEndOfMedia);
+                return;
+            }
+            myCompletedCycles++;
+            time = start + (time - stop);
+            run(myOnRepeat);
+        }
+        myCurrentTime.set(Duration.millis(time));
+    }
+
+    public long getSeekCount () {
+        return mySeekCount;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Status> statusProperty () {
+        return myStatus.getReadOnlyProperty();
+    }
+
+    @Override
+    public Status getStatus () {
+        return myStatus.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> currentTimeProperty () {
+        return myCurrentTime.getReadOnlyProperty();
+    }
+
+    @Override
+    public Duration getCurrentTime () {
+        return myCurrentTime.get();
+    }
+
+    @Override
+    public Duration getDuration () {
+        return myStatus.get() == Status.UNKNOWN ? Duration.UNKNOWN : myDuration;
+    }
+
+    @Override
+    public String getSource () {
+        return mySource;
+    }
+
+    @Override
+    public void play () {
+        Status status = myStatus.get();
+        if (status == Status.UNKNOWN) {
+            myPlayRequested = true;
+            return;
+        }
+        if (status == Status.PLAYING || status == Status.HALTED) {
+            return;
+        }
+        myStatus.set(Status.PLAYING);
+        run(myOnPlaying);
+    }
+
+    @Override
+    public void pause () {
+        Status status = myStatus.get();
+        if (status == Status.UNKNOWN || status == Status.PAUSED || status == Status.HALTED) {
+            myPlayRequested = false;
+            return;
+        }
+        myStatus.set(Status.PAUSED);
+        run(myOnPaused);
+    }
+
+    @Override
+    public void stop () {
+        Status status = myStatus.get();
+        if (status == Status.UNKNOWN || status == Status.HALTED) {
+            return;
+        }
+        myStatus.set(Status.STOPPED);
+        myCompletedCycles = 0;
+        myCurrentTime.set(myStartTime);
+    }
+
+    @Override
+    public void seek (final Duration time) {
+        Status status = myStatus.get();
+        if (status == Status.UNKNOWN || status == Status.HALTED || time.isUnknown()) {
+            return;
+        }
+        mySeekCount++;
+        double clamped = Math.max(myStartTime.toMillis(), Math.min(time.toMillis(), myStopTime.toMillis()));
+        myCurrentTime.set(Duration.millis(clamped));
+    }
+
+    @Override
+    public Duration getStartTime () {
+        return myStartTime;
+    }
+
+    @Override
+    public void setStartTime (final Duration time) {
+        myStartTime = time;
+    }
+
+    @Override
+    public Duration getStopTime () {
+        return myStopTime;
+    }
+
+    @Override
+    public void setStopTime (final Duration time) {
+        myStopTime = time;
+    }
+
+    @Override
+    public void setCycleCount (final int count) {
+        myCycleCount = count;
+    }
+
+    @Override
+    public double getRate () {
+        return myRate;
+    }
+
+    @Override
+    public void setRate (final double rate) {
+        myRate = rate;
+    }
+
+    @Override
+    public double getCurrentRate () {
+        return myStatus.get() == Status.PLAYING ? myRate : 0.0;
+    }
+
+    @Override
+    public DoubleProperty volumeProperty () {
+        return myVolume;
+    }
+
+    @Override
+    public boolean isMute () {
+        return myMute;
+    }
+
+    @Override
+    public void setMute (final boolean mute) {
+        myMute = mute;
+    }
+
+    @Override
+    public void setOnReady (final Runnable handler) {
+        myOnReady = handler;
+    }
+
+    @Override
+    public void setOnPlaying (final Runnable handler) {
+        myOnPlaying = handler;
+    }
+
+    @Override
+    public void setOnPaused (final Runnable handler) {
+        myOnPaused = handler;
+    }
+
+    @Override
+    public void setOnEndOfMedia (final Runnable handler) {
+        myOnEndOfMedia = handler;
+    }
+
+    @Override
+    public void setOnRepeat (final Runnable handler) {
+        myOnRepeat = handler;
+    }
+
+    @Override
+    public MediaPlayer getMediaPlayer () {
+        return null;
+    }
+
+    private static void run (final Runnable handler) {
+        if (handler != null) {
+            handler.run();
+        }
+    }
+}
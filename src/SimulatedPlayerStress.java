@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.TilePane;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * The SimulatedPlayerStress puts many VideoPlayers on one Stage, each
+ * driven by its own SimulatedPlaybackEngine, and advances every engine on
+ * each pulse. Once a second it prints how much FX thread time went into
+ * advancing the clocks (which runs the players' listeners) and into the
+ * shared media bar refresh, so the cost of the user interface can be
+ * measured without any decoding. Each refresh batch is counted once, on
+ * the first pulse after it ran.
+ *
+ * With "wall" as the third argument the players are hosted in a
+ * VideoWall, which refreshes every media bar from its own tick.
+ *
+ * Run with: java SimulatedPlayerStress [players] [maxRefreshesPerSecond] [wall]
+ *
+ */
+public class SimulatedPlayerStress extends Application {
+
+    private static final int DEFAULT_PLAYERS = 200;
+    private static final int TILE_WIDTH = 480;
+    private static final int TILE_HEIGHT = 120;
+    private static final int STAGE_WIDTH = 1600;
+    private static final int STAGE_HEIGHT = 900;
+    private static final Duration MEDIA_DURATION = Duration.minutes(90);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final String WALL_MODE = "wall";
+
+    private final List<SimulatedPlaybackEngine> myEngines = new ArrayList<>();
+    private VideoWall myWall;
+
+    public static void main (String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start (Stage stage) {
+        List<String> args = getParameters().getUnnamed();
+        int players = args.size() > 0 ? Integer.parseInt(args.get(0)) : DEFAULT_PLAYERS;
+        double maxRefreshRate = args.size() > 1 ? Double.parseDouble(args.get(1)) : 0;
+        MediaBarRefreshScheduler.getShared().setMaxRefreshRate(maxRefreshRate);
+        if (args.size() > 2 && WALL_MODE.equals(args.get(2))) {
+            myWall = new VideoWall((int)Math.ceil(Math.sqrt(players)));
+            myWall.setMaxRefreshRate(maxRefreshRate);
+        }
+
+        TilePane tiles = new TilePane();
+        for (int i = 0; i < players; i++) {
+            SimulatedPlaybackEngine engine = new SimulatedPlaybackEngine(MEDIA_DURATION);
+            VideoPlayer player = new VideoPlayer(engine);
+            if (myWall != null) {
+                myWall.addTile(player);
+            }
+            else {
+                player.setPrefSize(TILE_WIDTH, TILE_HEIGHT);
+                tiles.getChildren().add(player);
+            }
+            engine.makeReady();
+            engine.play();
+            myEngines.add(engine);
+        }
+
+        stage.setTitle(players + " simulated players");
+        stage.setScene(new Scene(myWall != null ? myWall : new ScrollPane(tiles), STAGE_WIDTH, STAGE_HEIGHT));
+        stage.show();
+        createClock().start();
+    }
+
+    private AnimationTimer createClock () {
+        return new AnimationTimer() {
+            private long myLastPulse;
+            private long myReportStart;
+            private long myAdvanceNanos;
+            private long myRefreshNanos;
+            private long myLastBatch;
+            private int myPulses;
+
+            @Override
+            public void handle (long now) {
+                if (myLastPulse == 0) {
+                    myLastPulse = now;
+                    myReportStart = now;
+                    return;
+                }
+                Duration elapsed = Duration.millis((now - myLastPulse) / 1_000_000.0);
+                myLastPulse = now;
+
+                long start = System.nanoTime();
+                for (SimulatedPlaybackEngine engine : myEngines) {
+                    engine.advance(elapsed);
+                }
+                myAdvanceNanos += System.nanoTime() - start;
+                MediaBarRefreshScheduler scheduler = MediaBarRefreshScheduler.getShared();
+                long batch = myWall != null ? myWall.getTickCount() : scheduler.getBatchCount();
+                if (batch != myLastBatch) {
+                    myLastBatch = batch;
+                    myRefreshNanos += myWall != null ? myWall.getLastTickNanos() : scheduler.getLastBatchNanos();
+                }
+                myPulses++;
+
+                if (now - myReportStart >= NANOS_PER_SECOND) {
+                    System.out.printf("%d players: %.3f ms advancing, %.3f ms refreshing per pulse (%d pulses)%n",
+                                      myEngines.size(), myAdvanceNanos / 1e6 / myPulses,
+                                      myRefreshNanos / 1e6 / myPulses, myPulses);
+                    myReportStart = now;
+                    myAdvanceNanos = 0;
+                    myRefreshNanos = 0;
+                    myPulses = 0;
+                }
+            }
+        };
+    }
+}
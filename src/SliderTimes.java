@@ -0,0 +1,25 @@
+import javafx.util.Duration;
+
+/**
+ * SliderTimes converts between media times and time slider values, which
+ * run from 0 to 100 over the duration of the media. The conversions are
+ * kept apart from the VideoPlayer so they can be measured without the FX
+ * toolkit.
+ *
+ */
+final class SliderTimes {
+
+    private static final double SLIDER_RANGE = 100.0;
+
+    private SliderTimes () {
+    }
+
+    public static Duration toMediaTime (final double sliderValue, final Duration duration) {
+        return duration.multiply(sliderValue / SLIDER_RANGE);
+    }
+
+    public static double toSliderValue (final Duration currentTime, final Duration duration) {
+        double doubleTime = currentTime.divide(duration.toMillis()).toMillis();
+        return doubleTime * SLIDER_RANGE;
+    }
+}
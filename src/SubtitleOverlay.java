@@ -0,0 +1,76 @@
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+/**
+ * The SubtitleOverlay shows the cues of a SubtitleTrack over the bottom of
+ * a movie pane. It remembers the segment it found on the last update and
+ * hands it to the track as a hint, so updates during playback take
+ * constant time and allocate nothing; the label is only touched when the
+ * text to show changes.
+ *
+ */
+class SubtitleOverlay {
+
+    private static final String STYLE = "-fx-text-fill: white; -fx-font-size: 20px; "
+            + "-fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 2 8 2 8;";
+    private static final double BOTTOM_MARGIN = 24;
+    private static final double MAX_WIDTH_FRACTION = 0.9;
+
+    private final Label myLabel = new Label();
+    private SubtitleTrack myTrack;
+    private int mySegment = -1;
+    private String myText;
+
+    public SubtitleOverlay (final Pane moviePane) {
+        myLabel.setStyle(STYLE);
+        myLabel.setWrapText(true);
+        myLabel.setTextAlignment(TextAlignment.CENTER);
+        myLabel.setMouseTransparent(true);
+        myLabel.setManaged(false);
+        myLabel.setVisible(false);
+        myLabel.maxWidthProperty().bind(moviePane.widthProperty().multiply(MAX_WIDTH_FRACTION));
+        myLabel.layoutXProperty().bind(moviePane.widthProperty().subtract(myLabel.widthProperty()).divide(2));
+        myLabel.layoutYProperty().bind(moviePane.heightProperty().subtract(myLabel.heightProperty())
+                                                                 .subtract(BOTTOM_MARGIN));
+        moviePane.getChildren().add(myLabel);
+        moviePane.widthProperty().addListener(observable->myLabel.autosize());
+    }
+
+    /**
+     * Sets the track to show. Passing null hides the subtitles.
+     */
+    public void setTrack (final SubtitleTrack track) {
+        myTrack = track;
+        mySegment = -1;
+        show(null);
+    }
+
+    public SubtitleTrack getTrack () {
+        return myTrack;
+    }
+
+    /**
+     * Shows the cues active at the time. Called on every clock refresh,
+     * including right after seeks.
+     */
+    public void update (final Duration currentTime) {
+        if (myTrack == null || currentTime.isUnknown()) {
+            return;
+        }
+        double millis = currentTime.toMillis();
+        mySegment = myTrack.findSegment(millis, mySegment);
+        show(myTrack.getText(mySegment, millis));
+    }
+
+    private void show (final String text) {
+        if (text == myText) {
+            return;
+        }
+        myText = text;
+        myLabel.setVisible(text != null);
+        myLabel.setText(text == null ? "" : text);
+        myLabel.autosize();
+    }
+}
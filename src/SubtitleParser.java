@@ -0,0 +1,241 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The SubtitleParser reads SubRip (.srt) and WebVTT (.vtt) files into a
+ * SubtitleTrack. It streams the file a line at a time and keeps the cues
+ * in growable primitive arrays, so a file of tens of thousands of cues is
+ * read without holding its text or a cue object per line.
+ *
+ * Both formats are blocks separated by blank lines, with a timing line of
+ * the form "start --> end". Anything before the timing line (SRT numbers,
+ * WebVTT identifiers) is skipped, as are WebVTT NOTE, STYLE and REGION
+ * blocks, cue settings after the end time, formatting tags and malformed
+ * blocks. WebVTT entities for markup characters are decoded.
+ *
+ */
+final class SubtitleParser {
+
+    public static final String[] EXTENSIONS = { ".srt", ".vtt" };
+
+    private static final String ARROW = "-->";
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The cues read so far, in arrays that double when full.
+     */
+    private static final class Cues {
+        long[] myStarts = new long[INITIAL_CAPACITY];
+        long[] myEnds = new long[INITIAL_CAPACITY];
+        String[] myTexts = new String[INITIAL_CAPACITY];
+        int myCount;
+
+        void add (final long start, final long end, final String text) {
+            if (myCount == myStarts.length) {
+                myStarts = Arrays.copyOf(myStarts, myCount * 2);
+                myEnds = Arrays.copyOf(myEnds, myCount * 2);
+                myTexts = Arrays.copyOf(myTexts, myCount * 2);
+            }
+            myStarts[myCount] = start;
+            myEnds[myCount] = end;
+            myTexts[myCount] = text;
+            myCount++;
+        }
+    }
+
+    private SubtitleParser () {
+    }
+
+    /**
+     * Returns the subtitle file next to the media with the same base name,
+     * or null if there is none.
+     */
+    public static Path findSidecar (final Path media) {
+        String name = media.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        for (String extension : EXTENSIONS) {
+            Path sidecar = media.resolveSibling(base + extension);
+            if (Files.isRegularFile(sidecar)) {
+                return sidecar;
+            }
+        }
+        return null;
+    }
+
+    public static SubtitleTrack parse (final Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    public static SubtitleTrack parse (final BufferedReader reader) throws IOException {
+        Cues cues = new Cues();
+        StringBuilder text = new StringBuilder();
+        long start = -1;
+        long end = -1;
+        boolean skipping = false;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first && line.startsWith(BYTE_ORDER_MARK)) {
+                line = line.substring(1);
+            }
+            first = false;
+            if (line.trim().isEmpty()) {
+                if (start >= 0 && text.length() > 0) {
+                    cues.add(start, end, text.toString());
+                }
+                text.setLength(0);
+                start = -1;
+                skipping = false;
+                continue;
+            }
+            if (skipping) {
+                continue;
+            }
+            if (start < 0) {
+                int arrow = line.indexOf(ARROW);
+                if (arrow >= 0) {
+                    start = parseTime(line, 0, arrow);
+                    end = parseTime(line, arrow + ARROW.length(), line.length());
+                    skipping = start < 0 || end < start;
+                    if (skipping) {
+                        start = -1;
+                    }
+                }
+                else if (isMetadataBlock(line)) {
+                    skipping = true;
+                }
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            appendText(text, line);
+        }
+        if (start >= 0 && text.length() > 0) {
+            cues.add(start, end, text.toString());
+        }
+        return new SubtitleTrack(cues.myStarts, cues.myEnds, cues.myTexts, cues.myCount);
+    }
+
+    private static boolean isMetadataBlock (final String line) {
+        String upper = line.toUpperCase(Locale.ROOT);
+        return upper.startsWith("WEBVTT") || upper.startsWith("NOTE") || upper.startsWith("STYLE")
+                || upper.startsWith("REGION");
+    }
+
+    /**
+     * Parses the first timestamp between the positions, as hh:mm:ss,mmm
+     * (SRT) or [hh:]mm:ss.mmm (WebVTT), and returns it in milliseconds, or
+     * -1 if there is none. The milliseconds may be left out.
+     */
+    static long parseTime (final String line, final int from, final int to) {
+        int position = from;
+        while (position < to && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        long[] fields = new long[3];
+        int fieldCount = 0;
+        long millis = -1;
+        long value = 0;
+        int digits = 0;
+        for (; position <= to; position++) {
+            char c = position < to ? line.charAt(position) : ' ';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            else if (c == ':' && digits > 0 && fieldCount < fields.length) {
+                fields[fieldCount++] = value;
+                value = 0;
+                digits = 0;
+            }
+            else if ((c == ',' || c == '.') && digits > 0 && fieldCount > 0 && fieldCount < fields.length) {
+                fields[fieldCount++] = value;
+                value = 0;
+                digits = 0;
+                int fraction = 0;
+                int scale = 100;
+                while (position + 1 < to && Character.isDigit(line.charAt(position + 1))) {
+                    position++;
+                    fraction += (line.charAt(position) - '0') * scale;
+                    scale /= 10;
+                }
+                millis = fraction;
+                break;
+            }
+            else {
+                break;
+            }
+        }
+        if (millis < 0 && digits > 0 && fieldCount > 0 && fieldCount < fields.length) {
+            fields[fieldCount++] = value;
+            millis = 0;
+        }
+        if (millis < 0 || fieldCount < 2) {
+            return -1;
+        }
+        long seconds = fields[fieldCount - 1];
+        long minutes = fields[fieldCount - 2];
+        long hours = fieldCount == 3 ? fields[0] : 0;
+        return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+    }
+
+    /**
+     * Appends the line without its formatting tags, decoding the entities
+     * WebVTT uses for markup characters.
+     */
+    private static void appendText (final StringBuilder text, final String line) {
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '<' || c == '{') {
+                int close = line.indexOf(c == '<' ? '>' : '}', i);
+                if (close > i) {
+                    i = close;
+                    continue;
+                }
+            }
+            if (c == '&') {
+                int semicolon = line.indexOf(';', i);
+                if (semicolon > i && semicolon - i <= 6) {
+                    String entity = line.substring(i + 1, semicolon);
+                    char decoded = decodeEntity(entity);
+                    if (decoded != 0) {
+                        text.append(decoded);
+                        i = semicolon;
+                        continue;
+                    }
+                }
+            }
+            text.append(c);
+        }
+    }
+
+    private static char decodeEntity (final String entity) {
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "nbsp":
+                return '\u00A0';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javafx.util.Duration;
+
+/**
+ * The SubtitleSearchIndex finds spoken lines in the subtitle files next to
+ * a set of media files. Each subtitle file gets an inverted index of its
+ * own: its words, lower-cased and sorted, each with the cues it occurs in.
+ * A query word matches every indexed word it is a prefix of, found with a
+ * binary search over the sorted words, and a cue matches when it matches
+ * every query word. Searching the library runs the same query over every
+ * file's index.
+ *
+ * Cues are ranked with BM25: rare words count for more than common ones,
+ * and short cues for more than long ones. A word matched only by prefix
+ * counts for less than a whole word, and a cue containing the query as a
+ * phrase gets a bonus. Each result carries the start of its cue, ready to
+ * be seeked to.
+ *
+ * Updates are incremental: a subtitle file whose size and modification
+ * time are unchanged keeps its index, and the files that did change are
+ * indexed in parallel.
+ *
+ */
+class SubtitleSearchIndex {
+
+    public static final int DEFAULT_RESULT_COUNT = 20;
+
+    private static final double PREFIX_WEIGHT = 0.6;
+    private static final double PHRASE_BONUS = 1.5;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_QUERY_WORDS = 32;
+
+    private final Map<Path, FileIndex> myFiles = new ConcurrentHashMap<>();
+    private long myLastUpdateNanos;
+    private int myLastIndexedCount;
+
+    /**
+     * The inverted index of one subtitle file.
+     */
+    private static final class FileIndex {
+        final Path myMedia;
+        final Path mySubtitles;
+        final long mySize;
+        final long myModified;
+        final SubtitleTrack myTrack;
+        final String[] myWords;
+        final int[][] myPostings;
+        final int[] myCueLengths;
+        final double myAverageLength;
+
+        FileIndex (final Path media, final Path subtitles, final long size, final long modified,
+                   final SubtitleTrack track) {
+            myMedia = media;
+            mySubtitles = subtitles;
+            mySize = size;
+            myModified = modified;
+            myTrack = track;
+
+            int cues = track.getCueCount();
+            Map<String, int[]> postings = new HashMap<>();
+            Map<String, Integer> counts = new HashMap<>();
+            myCueLengths = new int[cues];
+            long totalLength = 0;
+            List<String> words = new ArrayList<>();
+            for (int cue = 0; cue < cues; cue++) {
+                words.clear();
+                tokenize(track.getCueText(cue), words);
+                myCueLengths[cue] = words.size();
+                totalLength += words.size();
+                for (String word : words) {
+                    int[] list = postings.get(word);
+                    int count = list == null ? 0 : counts.get(word);
+                    if (count > 0 && list[count - 1] == cue) {
+                        continue;
+                    }
+                    if (list == null || count == list.length) {
+                        list = list == null ? new int[4] : Arrays.copyOf(list, count * 2);
+                        postings.put(word, list);
+                    }
+                    list[count] = cue;
+                    counts.put(word, count + 1);
+                }
+            }
+            myWords = postings.keySet().toArray(new String[0]);
+            Arrays.sort(myWords);
+            myPostings = new int[myWords.length][];
+            for (int i = 0; i < myWords.length; i++) {
+                myPostings[i] = Arrays.copyOf(postings.get(myWords[i]), counts.get(myWords[i]));
+            }
+            myAverageLength = cues == 0 ? 1 : Math.max(1, (double)totalLength / cues);
+        }
+
+        /**
+         * Returns the index of the first word not less than the prefix;
+         * the words it is a prefix of follow from there.
+         */
+        int firstWithPrefix (final String prefix) {
+            int index = Arrays.binarySearch(myWords, prefix);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * Indexes the subtitle files next to the media files, reusing the
+     * index of every unchanged one and dropping those of media no longer
+     * given. Returns the number of files indexed.
+     */
+    public int update (final Collection<Path> media) {
+        long start = System.nanoTime();
+        Set<Path> wanted = new HashSet<>();
+        for (Path file : media) {
+            wanted.add(file.toAbsolutePath());
+        }
+        myFiles.keySet().retainAll(wanted);
+        List<Path> changed = new ArrayList<>();
+        for (Path file : wanted) {
+            Path subtitles = SubtitleParser.findSidecar(file);
+            FileIndex existing = myFiles.get(file);
+            if (subtitles == null) {
+                myFiles.remove(file);
+            }
+            else if (existing == null || !existing.mySubtitles.equals(subtitles) || !isUnchanged(existing)) {
+                changed.add(file);
+            }
+        }
+        changed.parallelStream().forEach(file->index(file));
+        myLastIndexedCount = changed.size();
+        myLastUpdateNanos = System.nanoTime() - start;
+        return myFiles.size();
+    }
+
+    /**
+     * Searches every indexed file, returning the best matches first.
+     */
+    public List<SubtitleSearchResult> search (final String query, final int limit) {
+        return search(myFiles.values(), query, limit);
+    }
+
+    /**
+     * Searches the subtitles of one media file only.
+     */
+    public List<SubtitleSearchResult> search (final Path media, final String query, final int limit) {
+        FileIndex file = myFiles.get(media.toAbsolutePath());
+        return file == null ? Collections.emptyList() : search(Collections.singletonList(file), query, limit);
+    }
+
+    public int getFileCount () {
+        return myFiles.size();
+    }
+
+    public int getCueCount () {
+        int cues = 0;
+        for (FileIndex file : myFiles.values()) {
+            cues += file.myTrack.getCueCount();
+        }
+        return cues;
+    }
+
+    public long getLastUpdateNanos () {
+        return myLastUpdateNanos;
+    }
+
+    /**
+     * Returns how many subtitle files the last update had to index because
+     * they were new or changed.
+     */
+    public int getLastIndexedCount () {
+        return myLastIndexedCount;
+    }
+
+    private static boolean isUnchanged (final FileIndex index) {
+        try {
+            return Files.size(index.mySubtitles) == index.mySize
+                    && Files.getLastModifiedTime(index.mySubtitles).toMillis() == index.myModified;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void index (final Path media) {
+        Path subtitles = SubtitleParser.findSidecar(media);
+        try {
+            long size = Files.size(subtitles);
+            long modified = Files.getLastModifiedTime(subtitles).toMillis();
+            SubtitleTrack track = SubtitleParser.parse(subtitles);
+            myFiles.put(media, new FileIndex(media, subtitles, size, modified, track));
+        }
+        catch (IOException | RuntimeException e) {
+            myFiles.remove(media);
+            Reports.failed("index subtitles " + subtitles, e);
+        }
+    }
+
+    private static List<SubtitleSearchResult> search (final Collection<FileIndex> files, final String query,
+                                                      final int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+        String[] terms = new HashSet<>(words).toArray(new String[0]);
+        if (terms.length == 0 || terms.length > MAX_QUERY_WORDS || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String phrase = terms.length > 1 ? String.join(" ", words) : null;
+
+        // the inverse document frequency of each query word, over all the cues searched
+        long cueCount = 0;
+        long[] matching = new long[terms.length];
+        for (FileIndex file : files) {
+            cueCount += file.myTrack.getCueCount();
+            for (int t = 0; t < terms.length; t++) {
+                for (int w = file.firstWithPrefix(terms[t]);
+                     w < file.myWords.length && file.myWords[w].startsWith(terms[t]); w++) {
+                    matching[t] += file.myPostings[w].length;
+                }
+            }
+        }
+        double[] idf = new double[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            idf[t] = Math.log(1 + (cueCount - matching[t] + 0.5) / (matching[t] + 0.5));
+        }
+
+        Comparator<SubtitleSearchResult> worstFirst = Comparator.comparingDouble(SubtitleSearchResult::getScore)
+                .thenComparing(SubtitleSearchResult::getTime, Comparator.reverseOrder());
+        PriorityQueue<SubtitleSearchResult> best = new PriorityQueue<>(limit + 1, worstFirst);
+        int allTerms = (int)((1L << terms.length) - 1);
+        for (FileIndex file : files) {
+            scoreFile(file, terms, idf, allTerms, phrase, limit, best);
+        }
+        List<SubtitleSearchResult> results = new ArrayList<>(best);
+        results.sort(worstFirst.reversed());
+        return results;
+    }
+
+    /**
+     * Scores the cues of one file that match every term, keeping the best
+     * ones in the queue.
+     */
+    private static void scoreFile (final FileIndex file, final String[] terms, final double[] idf,
+                                   final int allTerms, final String phrase, final int limit,
+                                   final PriorityQueue<SubtitleSearchResult> best) {
+        int[] masks = null;
+        double[] scores = null;
+        int[] touched = null;
+        int touchedCount = 0;
+        for (int t = 0; t < terms.length; t++) {
+            int bit = 1 << t;
+            int first = file.firstWithPrefix(terms[t]);
+            if (first >= file.myWords.length || !file.myWords[first].startsWith(terms[t])) {
+                return;
+            }
+            if (masks == null) {
+                int cues = file.myTrack.getCueCount();
+                masks = new int[cues];
+                scores = new double[cues];
+                touched = new int[cues];
+            }
+            for (int w = first; w < file.myWords.length && file.myWords[w].startsWith(terms[t]); w++) {
+                double weight = file.myWords[w].length() == terms[t].length() ? 1 : PREFIX_WEIGHT;
+                for (int cue : file.myPostings[w]) {
+                    // only cues that matched every earlier term, and not this one yet
+                    if (masks[cue] != bit - 1) {
+                        continue;
+                    }
+                    if (masks[cue] == 0) {
+                        touched[touchedCount++] = cue;
+                    }
+                    masks[cue] |= bit;
+                    double length = file.myCueLengths[cue] / file.myAverageLength;
+                    scores[cue] += idf[t] * weight * (K1 + 1) / (1 + K1 * (1 - B + B * length));
+                }
+            }
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int cue = touched[i];
+            if (masks[cue] != allTerms) {
+                continue;
+            }
+            String text = file.myTrack.getCueText(cue);
+            double score = scores[cue];
+            if (phrase != null && normalize(text).contains(phrase)) {
+                score *= PHRASE_BONUS;
+            }
+            if (best.size() == limit && score <= best.peek().getScore()) {
+                continue;
+            }
+            best.add(new SubtitleSearchResult(file.myMedia, Duration.millis(file.myTrack.getCueStart(cue)), text,
+                                              score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+    }
+
+    /**
+     * Adds the lower-cased words of the text, runs of letters and digits,
+     * to the list.
+     */
+    static void tokenize (final String text, final List<String> words) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            }
+            else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    private static String normalize (final String text) {
+        List<String> words = new ArrayList<>();
+        tokenize(text, words);
+        return String.join(" ", words);
+    }
+}
@@ -0,0 +1,45 @@
+import java.nio.file.Path;
+
+import javafx.util.Duration;
+
+/**
+ * The SubtitleSearchResult is one cue found by a SubtitleSearchIndex: the
+ * media it belongs to, when it starts (the time to seek to), its text and
+ * how well it matched the query.
+ *
+ */
+class SubtitleSearchResult {
+
+    private final Path myMedia;
+    private final Duration myTime;
+    private final String myText;
+    private final double myScore;
+
+    public SubtitleSearchResult (final Path media, final Duration time, final String text, final double score) {
+        myMedia = media;
+        myTime = time;
+        myText = text;
+        myScore = score;
+    }
+
+    public Path getMedia () {
+        return myMedia;
+    }
+
+    public Duration getTime () {
+        return myTime;
+    }
+
+    public String getText () {
+        return myText;
+    }
+
+    public double getScore () {
+        return myScore;
+    }
+
+    @Override
+    public String toString () {
+        return myMedia.getFileName() + " @ " + TimeLabelFormatter.format(myTime) + ": " + myText.replace('\n', ' ');
+    }
+}
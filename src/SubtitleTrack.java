@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * The SubtitleTrack holds the cues of one subtitle file, sorted by start
+ * time, and an interval index over them for finding what to show at a
+ * given time. The index cuts the timeline into disjoint segments at every
+ * cue boundary, each with the text of all the cues active during it, so
+ * overlapping cues are shown together and the segment at a time is found
+ * with one binary search. Everything is built once at load; a lookup only
+ * reads primitive arrays.
+ *
+ * Lookups take a hint, the segment found last time: during playback the
+ * time only moves forward a little between ticks, so the hint or the
+ * segment after it is almost always the answer and a lookup is O(1). After
+ * a seek the hint is wrong and the binary search finds the segment in
+ * O(log n).
+ *
+ */
+class SubtitleTrack {
+
+    private final long[] myCueStarts;
+    private final long[] myCueEnds;
+    private final String[] myCueTexts;
+    private long[] mySegmentStarts;
+    private long[] mySegmentEnds;
+    private String[] mySegmentTexts;
+    private int mySegmentCount;
+
+    /**
+     * Creates a track from the first count cues of the arrays, which are
+     * in milliseconds and need not be sorted.
+     */
+    public SubtitleTrack (final long[] starts, final long[] ends, final String[] texts, final int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b)->Long.compare(starts[a], starts[b]));
+        myCueStarts = new long[count];
+        myCueEnds = new long[count];
+        myCueTexts = new String[count];
+        for (int i = 0; i < count; i++) {
+            myCueStarts[i] = starts[order[i]];
+            myCueEnds[i] = ends[order[i]];
+            myCueTexts[i] = texts[order[i]];
+        }
+        buildSegments();
+    }
+
+    public int getCueCount () {
+        return myCueStarts.length;
+    }
+
+    public long getCueStart (final int index) {
+        return myCueStarts[index];
+    }
+
+    public long getCueEnd (final int index) {
+        return myCueEnds[index];
+    }
+
+    public String getCueText (final int index) {
+        return myCueTexts[index];
+    }
+
+    /**
+     * Returns the last segment starting at or before the time, or -1 if
+     * the time is before every segment. The hint is tried first, then the
+     * segment after it.
+     */
+    public int findSegment (final double millis, final int hint) {
+        if (contains(hint, millis)) {
+            return hint;
+        }
+        if (contains(hint + 1, millis)) {
+            return hint + 1;
+        }
+        int low = 0;
+        int high = mySegmentCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (mySegmentStarts[middle] <= millis) {
+                found = middle;
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the text to show during the segment at the time, or null if
+     * no cue is active then.
+     */
+    public String getText (final int segment, final double millis) {
+        if (segment < 0 || millis >= mySegmentEnds[segment]) {
+            return null;
+        }
+        return mySegmentTexts[segment];
+    }
+
+    /**
+     * Returns whether the segment is the last one starting at or before
+     * the time.
+     */
+    private boolean contains (final int segment, final double millis) {
+        if (segment < -1 || segment >= mySegmentCount) {
+            return false;
+        }
+        return (segment < 0 || mySegmentStarts[segment] <= millis)
+                && (segment + 1 == mySegmentCount || millis < mySegmentStarts[segment + 1]);
+    }
+
+    /**
+     * Sweeps the cue boundaries in order, closing a segment wherever the
+     * set of active cues changes.
+     */
+    private void buildSegments () {
+        int count = myCueStarts.length;
+        long[] boundaries = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            boundaries[2 * i] = myCueStarts[i];
+            boundaries[2 * i + 1] = myCueEnds[i];
+        }
+        Arrays.sort(boundaries);
+        mySegmentStarts = new long[boundaries.length];
+        mySegmentEnds = new long[boundaries.length];
+        mySegmentTexts = new String[boundaries.length];
+
+        long[] activeEnds = new long[Math.max(1, count)];
+        int[] active = new int[Math.max(1, count)];
+        int activeCount = 0;
+        int next = 0;
+        StringBuilder text = new StringBuilder();
+        for (int b = 0; b + 1 < boundaries.length; b++) {
+            long start = boundaries[b];
+            long end = boundaries[b + 1];
+            if (start == end) {
+                continue;
+            }
+            int kept = 0;
+            for (int i = 0; i < activeCount; i++) {
+                if (activeEnds[i] > start) {
+                    active[kept] = active[i];
+                    activeEnds[kept] = activeEnds[i];
+                    kept++;
+                }
+            }
+            activeCount = kept;
+            while (next < count && myCueStarts[next] <= start) {
+                if (myCueEnds[next] > start) {
+                    active[activeCount] = next;
+                    activeEnds[activeCount] = myCueEnds[next];
+                    activeCount++;
+                }
+                next++;
+            }
+            if (activeCount == 0) {
+                continue;
+            }
+            text.setLength(0);
+            for (int i = 0; i < activeCount; i++) {
+                if (i > 0) {
+                    text.append('\n');
+                }
+                text.append(myCueTexts[active[i]]);
+            }
+            String joined = activeCount == 1 ? myCueTexts[active[0]] : text.toString();
+            if (mySegmentCount > 0 && mySegmentEnds[mySegmentCount - 1] == start
+                    && mySegmentTexts[mySegmentCount - 1].equals(joined)) {
+                mySegmentEnds[mySegmentCount - 1] = end;
+            }
+            else {
+                mySegmentStarts[mySegmentCount] = start;
+                mySegmentEnds[mySegmentCount] = end;
+                mySegmentTexts[mySegmentCount] = joined;
+                mySegmentCount++;
+            }
+        }
+    }
+}
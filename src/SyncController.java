@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The SyncController keeps several VideoPlayers in one JVM playing in
+ * step with a master. At a fixed interval it compares each follower's
+ * current time with the master's and corrects the drift: small drift is
+ * absorbed by nudging the follower's rate for a while, which is
+ * invisible, and large drift (after a seek or a stall) is fixed with a
+ * single seek. Followers also follow the master's play and pause, and
+ * seeks made while the master is paused.
+ *
+ * Each player refreshes its current time from its own timer, so the
+ * times are read through PlaybackClocks and compared at one instant;
+ * otherwise the phase between two timers would look like drift.
+ *
+ * Every measured drift is counted in a histogram of doubling buckets so
+ * the quality of the sync can be watched over time. All methods must be
+ * called on the FX thread.
+ *
+ */
+class SyncController {
+
+    public static final Duration DEFAULT_INTERVAL = Duration.millis(250);
+
+    private static final double RATE_THRESHOLD_MILLIS = 15;
+    private static final double SEEK_THRESHOLD_MILLIS = 400;
+    private static final double CORRECTION_WINDOW_MILLIS = 2000;
+    private static final double MAX_RATE_ADJUSTMENT = 0.05;
+    private static final double[] BUCKET_LIMITS_MILLIS = { 10, 20, 40, 80, 160, 320, 640 };
+
+    private final VideoPlayer myMaster;
+    private final List<VideoPlayer> myFollowers = new ArrayList<>();
+    private final Timeline myTimeline;
+    private final long[] myHistogram = new long[BUCKET_LIMITS_MILLIS.length + 1];
+    private final Map<PlaybackEngine, PlaybackClock> myClocks = new HashMap<>();
+    private LongSupplier myClock = System::nanoTime;
+    private double myLastMaxDriftMillis;
+    private long mySeekCorrections;
+    private long myRateCorrections;
+
+    public SyncController (final VideoPlayer master) {
+        this(master, DEFAULT_INTERVAL);
+    }
+
+    public SyncController (final VideoPlayer master, final Duration interval) {
+        myMaster = master;
+        myTimeline = new Timeline(new KeyFrame(interval, event->synchronize()));
+        myTimeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    public void addFollower (final VideoPlayer follower) {
+        myFollowers.add(follower);
+    }
+
+    public void removeFollower (final VideoPlayer follower) {
+        if (myFollowers.remove(follower)) {
+            follower.getPlayer().setRate(myMaster.getPlayer().getRate());
+        }
+    }
+
+    public List<VideoPlayer> getFollowers () {
+        return Collections.unmodifiableList(myFollowers);
+    }
+
+    public void start () {
+        myTimeline.play();
+    }
+
+    public void stop () {
+        myTimeline.stop();
+        double rate = myMaster.getPlayer().getRate();
+        for (VideoPlayer follower : myFollowers) {
+            follower.getPlayer().setRate(rate);
+        }
+        for (PlaybackClock clock : myClocks.values()) {
+            clock.dispose();
+        }
+        myClocks.clear();
+    }
+
+    /**
+     * Replaces the clock the players' times are extrapolated to, so that
+     * tests can drive the controller in simulated time.
+     */
+    void setClock (final LongSupplier clock) {
+        myClock = clock;
+    }
+
+    /**
+     * Returns the number of drift measurements per bucket. Bucket i counts
+     * drifts below getBucketLimitsMillis()[i] (and at or above the limit
+     * before it); the last bucket counts everything above the last limit.
+     */
+    public long[] getDriftHistogram () {
+        return myHistogram.clone();
+    }
+
+    public static double[] getBucketLimitsMillis () {
+        return BUCKET_LIMITS_MILLIS.clone();
+    }
+
+    public void resetHistogram () {
+        Arrays.fill(myHistogram, 0);
+    }
+
+    public double getLastMaxDriftMillis () {
+        return myLastMaxDriftMillis;
+    }
+
+    public long getSeekCorrectionCount () {
+        return mySeekCorrections;
+    }
+
+    public long getRateCorrectionCount () {
+        return myRateCorrections;
+    }
+
+    void synchronize () {
+        List<PlaybackEngine> followers = new ArrayList<>(myFollowers.size());
+        for (VideoPlayer view : myFollowers) {
+            followers.add(view.getPlayer());
+        }
+        synchronize(myMaster.getPlayer(), followers);
+    }
+
+    /**
+     * Brings the follower engines in step with the master engine once.
+     */
+    void synchronize (final PlaybackEngine master, final List<PlaybackEngine> followers) {
+        if (myClocks.size() > followers.size() + 1) {
+            forgetClocks(master, followers);
+        }
+        long now = myClock.getAsLong();
+        Status masterStatus = master.getStatus();
+        double masterRate = master.getRate();
+        PlaybackClock masterClock = clockOf(master);
+        double masterMillis = masterClock.getTimeMillis(now);
+        double maxDrift = 0;
+
+        for (PlaybackEngine follower : followers) {
+            PlaybackClock followerClock = clockOf(follower);
+            if (!followStatus(follower, masterStatus)
+                    || !masterClock.isTimeKnown() || !followerClock.isTimeKnown()) {
+                continue;
+            }
+            double drift = followerClock.getTimeMillis(now) - masterMillis;
+            if (masterStatus != Status.PLAYING) {
+                if (Math.abs(drift) >= SEEK_THRESHOLD_MILLIS) {
+                    follower.seek(Duration.millis(masterMillis));
+                    mySeekCorrections++;
+                }
+                continue;
+            }
+            record(drift);
+            maxDrift = Math.max(maxDrift, Math.abs(drift));
+
+            if (Math.abs(drift) >= SEEK_THRESHOLD_MILLIS) {
+                follower.seek(Duration.millis(masterMillis));
+                follower.setRate(masterRate);
+                mySeekCorrections++;
+            }
+            else if (Math.abs(drift) >= RATE_THRESHOLD_MILLIS) {
+                double adjustment = Math.max(-MAX_RATE_ADJUSTMENT,
+                                             Math.min(MAX_RATE_ADJUSTMENT, drift / CORRECTION_WINDOW_MILLIS));
+                follower.setRate(masterRate * (1 - adjustment));
+                myRateCorrections++;
+            }
+            else if (follower.getRate() != masterRate) {
+                follower.setRate(masterRate);
+            }
+        }
+        myLastMaxDriftMillis = maxDrift;
+    }
+
+    private PlaybackClock clockOf (final PlaybackEngine engine) {
+        return myClocks.computeIfAbsent(engine, key->new PlaybackClock(key, ()->myClock.getAsLong()));
+    }
+
+    /**
+     * Drops the clocks of engines that are no longer synchronized, such as
+     * the previous media of a player or a removed follower.
+     */
+    private void forgetClocks (final PlaybackEngine master, final List<PlaybackEngine> followers) {
+        myClocks.values().removeIf(clock->{
+            PlaybackEngine engine = clock.getEngine();
+            if (engine == master || followers.contains(engine)) {
+                return false;
+            }
+            clock.dispose();
+            return true;
+        });
+    }
+
+    /**
+     * Plays or pauses the follower to match the master. Returns false if
+     * the follower is not ready to be compared.
+     */
+    private static boolean followStatus (final PlaybackEngine follower, final Status masterStatus) {
+        Status status = follower.getStatus();
+        if (status == Status.UNKNOWN || status == Status.HALTED) {
+            return false;
+        }
+        if (masterStatus == Status.PLAYING && status != Status.PLAYING) {
+            follower.play();
+        }
+        else if (masterStatus == Status.PAUSED && status == Status.PLAYING) {
+            follower.pause();
+        }
+        return true;
+    }
+
+    private void record (final double driftMillis) {
+        double magnitude = Math.abs(driftMillis);
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS_MILLIS.length && magnitude >= BUCKET_LIMITS_MILLIS[bucket]) {
+            bucket++;
+        }
+        myHistogram[bucket]++;
+    }
+}
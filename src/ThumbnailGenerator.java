@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+import javafx.util.Duration;
+
+/**
+ * The ThumbnailGenerator fills a ThumbnailStrip with scrub previews of a
+ * local media file. It drives a hidden MediaPlayer and MediaView of its
+ * own: for each interval it seeks, waits for the frame, and snapshots the
+ * view. The seeking and snapshots run on the FX thread, while the waiting
+ * and file writes run on a bounded generation executor.
+ *
+ * A MediaPlayer only reports the time a seek reached once it has been
+ * playing or paused, so the hidden player is started and paused before
+ * the first seek.
+ *
+ * A thumbnail is taken every five seconds, or further apart for a long
+ * file, so that the strip stays within MAX_THUMBNAILS and one sheet.
+ *
+ * Thumbnails are appended to a ThumbnailSheetFile next to the media, so a
+ * later generator for the same file starts from the cached thumbnails and
+ * only takes the ones that are still missing.
+ *
+ */
+class ThumbnailGenerator {
+
+    private static final int THUMBNAIL_WIDTH = 160;
+    private static final Duration DEFAULT_INTERVAL = Duration.seconds(5);
+    private static final int MAX_THUMBNAILS = 400;
+    private static final double MILLIS_PER_SECOND = 1000;
+    private static final long READY_TIMEOUT_MILLIS = 10_000;
+    private static final long FRAME_TIMEOUT_MILLIS = 1_000;
+    private static final int MAX_QUEUED_FILES = 4;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_FILES),
+            BackgroundTasks.newThreadFactory("thumbnails"), new ThreadPoolExecutor.DiscardPolicy());
+
+    private final Path myFile;
+    private final ThumbnailStrip myStrip;
+    private volatile boolean myCancelled;
+    private MediaPlayer myPlayer;
+    private MediaView myView;
+
+    /**
+     * Creates a generator for the file and the strip it will fill. Must be
+     * called on the FX thread.
+     */
+    public ThumbnailGenerator (final Path file, final MediaInfo info) {
+        myFile = file;
+        int height = info.getWidth() > 0 ? THUMBNAIL_WIDTH * info.getHeight() / info.getWidth() : THUMBNAIL_WIDTH;
+        height = Math.max(1, height);
+        double millis = info.getDuration().toMillis();
+        int maxCount = Math.min(MAX_THUMBNAILS, ThumbnailStrip.getMaxCount(height));
+        Duration interval = DEFAULT_INTERVAL;
+        if (millis / interval.toMillis() > maxCount) {
+            // whole seconds, so the interval stored with cached sheets stays stable
+            interval = Duration.seconds(Math.ceil(millis / maxCount / MILLIS_PER_SECOND));
+        }
+        int count = Math.max(1, Math.min(maxCount, (int)Math.ceil(millis / interval.toMillis())));
+        myStrip = new ThumbnailStrip(interval, THUMBNAIL_WIDTH, height, count);
+    }
+
+    public ThumbnailStrip getStrip () {
+        return myStrip;
+    }
+
+    /**
+     * Queues generation. If the generation queue is full the request is
+     * dropped; the cached thumbnails stay usable and a later request picks
+     * up where this one would have started.
+     */
+    public void start () {
+        EXECUTOR.execute(()->generate());
+    }
+
+    public void cancel () {
+        myCancelled = true;
+    }
+
+    private void generate () {
+        Path sheet = myFile.resolveSibling(myFile.getFileName() + ThumbnailSheetFile.SUFFIX);
+        try (ThumbnailSheetFile cache = new ThumbnailSheetFile(sheet, myStrip, Files.size(myFile),
+                                                               Files.getLastModifiedTime(myFile).toMillis())) {
+            cache.readAvailable(pixels->Platform.runLater(()->myStrip.addThumbnail(pixels)));
+            if (cache.getAvailableCount() < myStrip.getCount() && !myCancelled) {
+                onFxThread(()->{
+                    openPlayer();
+                    return null;
+                });
+                waitUntilPaused();
+                for (int i = cache.getAvailableCount(); i < myStrip.getCount() && !myCancelled; i++) {
+                    int[] pixels = takeThumbnail(myStrip.getInterval().multiply(i));
+                    cache.append(pixels);
+                    Platform.runLater(()->myStrip.addThumbnail(pixels));
+                }
+            }
+        }
+        catch (IOException | TimeoutException e) {
+            //previews stay limited to the thumbnails generated so far
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            Platform.runLater(()->closePlayer());
+        }
+    }
+
+    private void openPlayer () {
+        myPlayer = new MediaPlayer(new Media(MediaSources.toSource(myFile)));
+        myPlayer.setMute(true);
+        myView = new MediaView(myPlayer);
+        myView.setFitWidth(myStrip.getThumbnailWidth());
+        myView.setFitHeight(myStrip.getThumbnailHeight());
+    }
+
+    private void closePlayer () {
+        if (myPlayer != null) {
+            myPlayer.dispose();
+            myPlayer = null;
+            myView = null;
+        }
+    }
+
+    private void waitUntilPaused () throws InterruptedException, TimeoutException {
+        CountDownLatch paused = new CountDownLatch(1);
+        Platform.runLater(()->{
+            myPlayer.setOnPaused(()->paused.countDown());
+            if (myPlayer.getStatus() == MediaPlayer.Status.READY) {
+                prime();
+            }
+            else {
+                myPlayer.setOnReady(()->prime());
+            }
+        });
+        if (!paused.await(READY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Thumbnail player never became ready for " + myFile);
+        }
+    }
+
+    private void prime () {
+        myPlayer.play();
+        myPlayer.pause();
+    }
+
+    private int[] takeThumbnail (final Duration time) throws InterruptedException, TimeoutException {
+        CountDownLatch seeked = new CountDownLatch(1);
+        InvalidationListener listener = observable->seeked.countDown();
+        onFxThread(()->{
+            myPlayer.currentTimeProperty().addListener(listener);
+            myPlayer.seek(time);
+            return null;
+        });
+        boolean settled = seeked.await(FRAME_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (!settled) {
+            Platform.runLater(()->myPlayer.currentTimeProperty().removeListener(listener));
+            throw new TimeoutException("Thumbnail player never reached " + time + " in " + myFile);
+        }
+        return onFxThread(()->{
+            myPlayer.currentTimeProperty().removeListener(listener);
+            WritableImage image = myView.snapshot(new SnapshotParameters(), null);
+            int width = myStrip.getThumbnailWidth();
+            int height = myStrip.getThumbnailHeight();
+            int[] pixels = new int[width * height];
+            int copyWidth = Math.min(width, (int)image.getWidth());
+            int copyHeight = Math.min(height, (int)image.getHeight());
+            image.getPixelReader().getPixels(0, 0, copyWidth, copyHeight,
+                                             PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            return pixels;
+        });
+    }
+
+    private static <T> T onFxThread (final Callable<T> task)
+            throws InterruptedException, TimeoutException {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get(FRAME_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
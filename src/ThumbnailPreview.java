@@ -0,0 +1,63 @@
+import javafx.geometry.Bounds;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Popup;
+import javafx.util.Duration;
+
+/**
+ * The ThumbnailPreview shows the thumbnail under the mouse in a small
+ * popup above the time slider while the user hovers over or drags it, so
+ * they can find a scene without issuing real seeks.
+ *
+ */
+class ThumbnailPreview {
+
+    private static final double GAP = 4;
+
+    private final Slider mySlider;
+    private final Popup myPopup = new Popup();
+    private final ImageView myImageView = new ImageView();
+    private ThumbnailStrip myStrip;
+    private Duration myDuration = Duration.UNKNOWN;
+
+    public ThumbnailPreview (final Slider slider) {
+        mySlider = slider;
+        myPopup.getContent().add(myImageView);
+        slider.addEventFilter(MouseEvent.MOUSE_MOVED, event->show(event));
+        slider.addEventFilter(MouseEvent.MOUSE_DRAGGED, event->show(event));
+        slider.addEventFilter(MouseEvent.MOUSE_EXITED, event->myPopup.hide());
+        slider.addEventFilter(MouseEvent.MOUSE_RELEASED, event->myPopup.hide());
+    }
+
+    public void setStrip (final ThumbnailStrip strip, final Duration duration) {
+        myStrip = strip;
+        myDuration = duration;
+        myImageView.setImage(null);
+    }
+
+    private void show (final MouseEvent event) {
+        if (myStrip == null || myDuration.isUnknown() || mySlider.getWidth() <= 0) {
+            return;
+        }
+        double fraction = Math.max(0, Math.min(1, event.getX() / mySlider.getWidth()));
+        int index = myStrip.indexAt(myDuration.multiply(fraction));
+        if (index < 0) {
+            myPopup.hide();
+            return;
+        }
+        myImageView.setImage(myStrip.getSheet());
+        myImageView.setViewport(myStrip.getViewport(index));
+
+        Bounds slider = mySlider.localToScreen(mySlider.getBoundsInLocal());
+        double x = event.getScreenX() - myStrip.getThumbnailWidth() / 2.0;
+        double y = slider.getMinY() - myStrip.getThumbnailHeight() - GAP;
+        if (myPopup.isShowing()) {
+            myPopup.setX(x);
+            myPopup.setY(y);
+        }
+        else {
+            myPopup.show(mySlider, x, y);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * The ThumbnailSheetFile stores generated thumbnails next to their media
+ * so previews survive restarts and generation can resume where it stopped.
+ * The file holds a fixed header (layout, the size and modification time
+ * of the media, and how many thumbnails are complete) followed by the raw
+ * ARGB pixels of each thumbnail in order.
+ *
+ * The complete count is only advanced after a thumbnail's pixels have been
+ * written, so a crash mid-write just costs that one thumbnail.
+ *
+ */
+class ThumbnailSheetFile implements Closeable {
+
+    public static final String SUFFIX = ".thumbs";
+
+    private static final int MAGIC = 0x54484d31; // "THM1"
+    private static final int HEADER_SIZE = 44;
+    private static final int AVAILABLE_POSITION = HEADER_SIZE - 4;
+
+    private final FileChannel myChannel;
+    private final int myThumbnailBytes;
+    private final ByteBuffer myPixelBuffer;
+    private final ByteBuffer myCountBuffer = ByteBuffer.allocate(4);
+    private int myAvailable;
+
+    /**
+     * Opens the sheet file for the given layout and media, discarding its
+     * contents if they were written for a different layout or media.
+     */
+    public ThumbnailSheetFile (final Path file, final ThumbnailStrip layout, final long mediaSize,
+                               final long mediaModified) throws IOException {
+        myChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+        myThumbnailBytes = layout.getThumbnailWidth() * layout.getThumbnailHeight() * 4;
+        myPixelBuffer = ByteBuffer.allocate(myThumbnailBytes);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+              .putLong((long)layout.getInterval().toMillis())
+              .putInt(layout.getThumbnailWidth())
+              .putInt(layout.getThumbnailHeight())
+              .putInt(layout.getCount())
+              .putLong(mediaSize)
+              .putLong(mediaModified);
+
+        ByteBuffer existing = ByteBuffer.allocate(HEADER_SIZE);
+        myChannel.read(existing, 0);
+        boolean matches = existing.position() == HEADER_SIZE;
+        for (int i = 0; matches && i < AVAILABLE_POSITION; i++) {
+            matches = existing.get(i) == header.get(i);
+        }
+        if (matches) {
+            int available = existing.getInt(AVAILABLE_POSITION);
+            long complete = (myChannel.size() - HEADER_SIZE) / myThumbnailBytes;
+            myAvailable = (int)Math.max(0, Math.min(available, Math.min(complete, layout.getCount())));
+        }
+        else {
+            myChannel.truncate(0);
+            header.putInt(0).flip();
+            myChannel.write(header, 0);
+        }
+    }
+
+    public int getAvailableCount () {
+        return myAvailable;
+    }
+
+    /**
+     * Reads every complete thumbnail in order, handing each one's pixels
+     * to the consumer in a newly allocated array.
+     */
+    public void readAvailable (final Consumer<int[]> consumer) throws IOException {
+        for (int i = 0; i < myAvailable; i++) {
+            myPixelBuffer.clear();
+            long position = HEADER_SIZE + (long)i * myThumbnailBytes;
+            while (myPixelBuffer.hasRemaining() && myChannel.read(myPixelBuffer, position + myPixelBuffer.position()) >= 0) {
+                //keep reading until the thumbnail is complete
+            }
+            myPixelBuffer.flip();
+            int[] pixels = new int[myThumbnailBytes / 4];
+            myPixelBuffer.asIntBuffer().get(pixels);
+            consumer.accept(pixels);
+        }
+    }
+
+    public void append (final int[] pixels) throws IOException {
+        myPixelBuffer.clear();
+        IntBuffer ints = myPixelBuffer.asIntBuffer();
+        ints.put(pixels);
+        long position = HEADER_SIZE + (long)myAvailable * myThumbnailBytes;
+        while (myPixelBuffer.hasRemaining()) {
+            myChannel.write(myPixelBuffer, position + myPixelBuffer.position());
+        }
+        myAvailable++;
+        myCountBuffer.clear();
+        myCountBuffer.putInt(0, myAvailable);
+        myChannel.write(myCountBuffer, AVAILABLE_POSITION);
+    }
+
+    @Override
+    public void close () throws IOException {
+        myChannel.close();
+    }
+}
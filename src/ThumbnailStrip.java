@@ -0,0 +1,123 @@
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.util.Duration;
+
+/**
+ * The ThumbnailStrip is the in-memory sprite sheet of scrub previews for
+ * one media file. Thumbnails are taken at a fixed interval and packed row
+ * by row into a single WritableImage; a preview is shown by pointing an
+ * ImageView's viewport at one cell of the sheet.
+ *
+ * Thumbnails arrive in order while they are generated, so the strip only
+ * tracks how many are available. The sheet is only as tall as the rows
+ * they fill, and grows by doubling, so a player whose thumbnails are never
+ * generated holds no sheet at all. It must be used on the FX thread.
+ *
+ */
+class ThumbnailStrip {
+
+    /**
+     * The tallest sheet made, within the texture size every GPU supports.
+     */
+    public static final int MAX_SHEET_HEIGHT = 8192;
+
+    private static final int COLUMNS = 10;
+
+    private final Duration myInterval;
+    private final int myThumbnailWidth;
+    private final int myThumbnailHeight;
+    private final int myCount;
+    private WritableImage mySheet;
+    private int myAvailable;
+
+    public ThumbnailStrip (final Duration interval, final int width, final int height, final int count) {
+        myInterval = interval;
+        myThumbnailWidth = width;
+        myThumbnailHeight = height;
+        myCount = count;
+    }
+
+    /**
+     * Returns how many thumbnails of the height fit in one sheet.
+     */
+    public static int getMaxCount (final int height) {
+        return COLUMNS * Math.max(1, MAX_SHEET_HEIGHT / height);
+    }
+
+    public Duration getInterval () {
+        return myInterval;
+    }
+
+    public int getThumbnailWidth () {
+        return myThumbnailWidth;
+    }
+
+    public int getThumbnailHeight () {
+        return myThumbnailHeight;
+    }
+
+    public int getCount () {
+        return myCount;
+    }
+
+    public int getAvailableCount () {
+        return myAvailable;
+    }
+
+    /**
+     * Returns the sheet of the thumbnails available so far, or null before
+     * the first one. The sheet is replaced when it grows.
+     */
+    public Image getSheet () {
+        return mySheet;
+    }
+
+    /**
+     * Stores the ARGB pixels of the next thumbnail in the sheet.
+     */
+    public void addThumbnail (final int[] pixels) {
+        if (myAvailable == myCount) {
+            return;
+        }
+        int x = myAvailable % COLUMNS * myThumbnailWidth;
+        int y = myAvailable / COLUMNS * myThumbnailHeight;
+        if (mySheet == null || y >= mySheet.getHeight()) {
+            grow(myAvailable / COLUMNS + 1);
+        }
+        mySheet.getPixelWriter().setPixels(x, y, myThumbnailWidth, myThumbnailHeight,
+                                           PixelFormat.getIntArgbInstance(), pixels, 0, myThumbnailWidth);
+        myAvailable++;
+    }
+
+    private void grow (final int neededRows) {
+        int allRows = (myCount + COLUMNS - 1) / COLUMNS;
+        int rows = mySheet == null ? 1 : (int)mySheet.getHeight() / myThumbnailHeight;
+        while (rows < neededRows) {
+            rows *= 2;
+        }
+        WritableImage sheet = new WritableImage(myThumbnailWidth * Math.min(myCount, COLUMNS),
+                                                myThumbnailHeight * Math.min(rows, allRows));
+        if (mySheet != null) {
+            sheet.getPixelWriter().setPixels(0, 0, (int)mySheet.getWidth(), (int)mySheet.getHeight(),
+                                             mySheet.getPixelReader(), 0, 0);
+        }
+        mySheet = sheet;
+    }
+
+    /**
+     * Returns the thumbnail taken closest before the given time, or -1 if
+     * it has not been generated yet.
+     */
+    public int indexAt (final Duration time) {
+        int index = (int)Math.floor(time.toMillis() / myInterval.toMillis());
+        index = Math.max(0, Math.min(index, myCount - 1));
+        return index < myAvailable ? index : -1;
+    }
+
+    public Rectangle2D getViewport (final int index) {
+        return new Rectangle2D(index % COLUMNS * myThumbnailWidth, index / COLUMNS * myThumbnailHeight,
+                               myThumbnailWidth, myThumbnailHeight);
+    }
+}
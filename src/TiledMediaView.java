@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.RowConstraints;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+
+/**
+ * The TiledMediaView spans one movie across a grid of tiles, such as the
+ * screens of a 3x3 wall. Every tile is a MediaView of the same MediaPlayer
+ * whose viewport shows only its share of the frame, so the movie is
+ * decoded once no matter how many tiles show it.
+ *
+ * Each tile is stretched to fill its cell; with screens of the same
+ * aspect ratio as the movie's tiles, the picture is undistorted.
+ *
+ */
+class TiledMediaView extends GridPane {
+
+    private static final double PERCENT = 100.0;
+
+    private final int myRows;
+    private final int myColumns;
+    private final List<MediaView> myTiles = new ArrayList<>();
+    private final InvalidationListener mySizeListener = observable->updateViewports();
+    private MediaPlayer myPlayer;
+
+    public TiledMediaView (final int rows, final int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("A tiled view needs at least one tile");
+        }
+        myRows = rows;
+        myColumns = columns;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                MediaView tile = new MediaView();
+                tile.setPreserveRatio(false);
+                Pane cell = new Pane(tile);
+                cell.setMinSize(0, 0);
+                tile.fitWidthProperty().bind(cell.widthProperty());
+                tile.fitHeightProperty().bind(cell.heightProperty());
+                add(cell, column, row);
+                myTiles.add(tile);
+            }
+        }
+        for (int column = 0; column < columns; column++) {
+            ColumnConstraints constraints = new ColumnConstraints();
+            constraints.setPercentWidth(PERCENT / columns);
+            getColumnConstraints().add(constraints);
+        }
+        for (int row = 0; row < rows; row++) {
+            RowConstraints constraints = new RowConstraints();
+            constraints.setPercentHeight(PERCENT / rows);
+            getRowConstraints().add(constraints);
+        }
+        setMinSize(0, 0);
+    }
+
+    public int getRows () {
+        return myRows;
+    }
+
+    public int getColumns () {
+        return myColumns;
+    }
+
+    /**
+     * Shows the player on every tile. Passing null clears the tiles.
+     */
+    public void setMediaPlayer (final MediaPlayer player) {
+        if (myPlayer != null) {
+            myPlayer.getMedia().widthProperty().removeListener(mySizeListener);
+            myPlayer.getMedia().heightProperty().removeListener(mySizeListener);
+        }
+        myPlayer = player;
+        for (MediaView tile : myTiles) {
+            tile.setMediaPlayer(player);
+        }
+        if (player != null) {
+            player.getMedia().widthProperty().addListener(mySizeListener);
+            player.getMedia().heightProperty().addListener(mySizeListener);
+            updateViewports();
+        }
+    }
+
+    public MediaPlayer getMediaPlayer () {
+        return myPlayer;
+    }
+
+    private void updateViewports () {
+        Media media = myPlayer.getMedia();
+        double tileWidth = (double)media.getWidth() / myColumns;
+        double tileHeight = (double)media.getHeight() / myRows;
+        for (int i = 0; i < myTiles.size(); i++) {
+            Rectangle2D viewport = tileWidth > 0 && tileHeight > 0
+                    ? new Rectangle2D(i % myColumns * tileWidth, i / myColumns * tileHeight, tileWidth, tileHeight)
+                    : null;
+            myTiles.get(i).setViewport(viewport);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import javafx.util.Duration;
+
+/**
+ * The TimeLabelFormatter builds the time display of the VideoPlayer in
+ * the style of YouTube ("h:mm:ss / h:mm:ss") without going through
+ * String.format on every tick.
+ *
+ * The duration half of the label is written once per media, and the
+ * elapsed half is written into a reused char buffer. A new String is
+ * only created when the displayed second actually changes, so callers
+ * can skip updating their Label when update returns false.
+ *
+ */
+class TimeLabelFormatter {
+
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int SECONDS_PER_HOUR = SECONDS_PER_MINUTE * MINUTES_PER_HOUR;
+
+    private static final int NO_SECOND = -1;
+    private static final int MAX_CLOCK_LENGTH = 16;
+    private static final String SEPARATOR = " / ";
+
+    private final char[] myBuffer = new char[2 * MAX_CLOCK_LENGTH + SEPARATOR.length()];
+    private final char[] myDurationText = new char[MAX_CLOCK_LENGTH + SEPARATOR.length()];
+    private int myDurationLength;
+    private int myDisplayedSecond = NO_SECOND;
+    private String myText;
+
+    public TimeLabelFormatter () {
+        setDuration(Duration.ZERO);
+    }
+
+    public void setDuration (final Duration duration) {
+        SEPARATOR.getChars(0, SEPARATOR.length(), myDurationText, 0);
+        myDurationLength = writeClock(toWholeSeconds(duration), myDurationText, SEPARATOR.length());
+        myDisplayedSecond = NO_SECOND;
+    }
+
+    /**
+     * Returns true if the displayed text changed, in which case getText
+     * returns the new label.
+     */
+    public boolean update (final Duration elapsed) {
+        int second = toWholeSeconds(elapsed);
+        if (second == myDisplayedSecond) {
+            return false;
+        }
+        myDisplayedSecond = second;
+        int length = writeClock(second, myBuffer, 0);
+        System.arraycopy(myDurationText, 0, myBuffer, length, myDurationLength);
+        myText = new String(myBuffer, 0, length + myDurationLength);
+        return true;
+    }
+
+    public String getText () {
+        return myText;
+    }
+
+    /**
+     * Formats a single time as a clock, such as 1:02:03.
+     */
+    public static String format (final Duration time) {
+        char[] buffer = new char[MAX_CLOCK_LENGTH];
+        return new String(buffer, 0, writeClock(toWholeSeconds(time), buffer, 0));
+    }
+
+    private static int toWholeSeconds (final Duration duration) {
+        return (int)Math.floor(duration.toSeconds());
+    }
+
+    private static int writeClock (final int totalSeconds, final char[] buffer, final int offset) {
+        int hours = totalSeconds / SECONDS_PER_HOUR;
+        int minutes = totalSeconds % SECONDS_PER_HOUR / SECONDS_PER_MINUTE;
+        int seconds = totalSeconds % SECONDS_PER_MINUTE;
+
+        int position = writeNumber(hours, buffer, offset);
+        buffer[position++] = ':';
+        position = writeTwoDigits(minutes, buffer, position);
+        buffer[position++] = ':';
+        return writeTwoDigits(seconds, buffer, position);
+    }
+
+    private static int writeNumber (final int value, final char[] buffer, final int offset) {
+        int digits = 1;
+        for (int remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        int remaining = value;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char)('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return offset + digits;
+    }
+
+    private static int writeTwoDigits (final int value, final char[] buffer, final int offset) {
+        buffer[offset] = (char)('0' + value / 10);
+        buffer[offset + 1] = (char)('0' + value % 10);
+        return offset + 2;
+    }
+}
@@ -1,4 +1,8 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
@@ -27,6 +31,10 @@ import javafx.util.Duration;
  * to continuously check on its status to play or stop the video when
  * necessary.
  * 
+ * The controls are bound to a PlaybackEngine rather than to a
+ * MediaPlayer directly, so they can also be driven by a simulated
+ * engine without real media.
+ * 
  */
 class VideoPlayer extends BorderPane {
 
@@ -36,9 +44,8 @@ class VideoPlayer extends BorderPane {
 
     private static final double DISABLED_SLIDER_OPACITY = 0.5;
     private static final double DOUBLE_CONVERT = 100.0;
-
-    private static final int SECONDS_PER_MINUTE = 60;
-    private static final int MINUTES_PER_HOUR = 60;
+    private static final double JOURNAL_STEP_MILLIS = 1000;
+    private static final Duration RESUME_END_MARGIN = Duration.seconds(5);
 
     private static final String SPACE = "      ";
 
@@ -50,38 +57,155 @@ class VideoPlayer extends BorderPane {
     private static final String REPLAY_BUTTON_TEXT = "REPLAY";
     private static final String MUTE_BUTTON_TEXT = "MUTE";
     private static final String UNMUTE_BUTTON_TEXT = "UNMUTE";
+    private static final String PREVIOUS_CHAPTER_BUTTON_TEXT = "|<";
+    private static final String NEXT_CHAPTER_BUTTON_TEXT = ">|";
+    private static final int CHAPTER_BUTTON_WIDTH = 40;
+    private static final Duration PREVIOUS_CHAPTER_GRACE = Duration.seconds(3);
 
     private static final String VOLUME_LABEL_TEXT = "Volume: ";
-    private static final String TIME_LABEL_TEXT = "%d:%02d:%02d / %d:%02d:%02d";
 
-    private MediaPlayer myMediaPlayer;
+    private PlaybackEngine myPlayer;
     private MediaView myMediaView;
+    private Button myPlayButton;
     private Slider myTimeSlider;
     private Label myTimeLabel;
-    private Duration myDuration;
-    private boolean myCycleCountIsIndefinite = false;
-    private boolean mySingleReplayEnabled = false; //odd errors when this is true, but perfect if false
+    private Button myVolumeButton;
+    private Slider myVolumeSlider;
+    private final TimeLabelFormatter myTimeLabelFormatter = new TimeLabelFormatter();
+    private final Runnable myRefreshTask = ()->verifyValues();
+    private final InvalidationListener myCurrentTimeListener = observable->requestRefresh();
+    private Duration myDuration = Duration.UNKNOWN;
+    private MediaInfo myMediaInfo;
+    private SeekCoordinator mySeekCoordinator;
+    private ThumbnailPreview myThumbnailPreview;
+    private SeekPrefetcher mySeekPrefetcher;
+    private SubtitleOverlay mySubtitleOverlay;
+    private ChapterMarkers myChapterMarkers;
+    private Button myPreviousChapterButton;
+    private Button myNextChapterButton;
+    private ThumbnailGenerator myThumbnailGenerator;
+    private Path myResumeFile;
+    private Duration myResumePosition;
+    private boolean myStartChosen;
+    private double myJournaledMillis;
+    private final LoopController myLoopController = new LoopController();
+    private boolean myReplayPending = false;
+    private boolean myMuted = false;
+    private Runnable myEndOfMediaHandler;
+    private PlaybackCommandListener myCommandListener;
     private HBox myMediaBar;
+    private Pane myMoviePane;
+    private TiledMediaView myTiledView;
+    private boolean myMediaBarVisible = true;
+    private boolean myRefreshedExternally = false;
+    private boolean myListeningToClock = false;
 
     public VideoPlayer (final MediaPlayer player) {
-        createMediaPlayer(player);
+        this(new MediaPlayerEngine(player));
+    }
+
+    public VideoPlayer (final PlaybackEngine player) {
+        createMediaPlayer();
         defineMediaBarBehavior();
 
-        final Button PLAY_BUTTON = new Button(PLAY_BUTTON_TEXT);
-        createAndDefineVisualComponents(player, PLAY_BUTTON);
-        createAndDefineAudioComponents(player);
+        myPlayButton = new Button(PLAY_BUTTON_TEXT);
+        createAndDefineVisualComponents(myPlayButton);
+        createAndDefineAudioComponents();
+
+        setPlayer(player);
+    }
+
+    public void setMediaPlayer (final MediaPlayer player) {
+        setPlayer(new MediaPlayerEngine(player));
+    }
+
+    /**
+     * Moves the controls over to another player, so one VideoPlayer can be
+     * reused across media. The previous player is only detached (its
+     * listeners, handlers and volume binding are removed); disposing of it
+     * is left to whoever owns it.
+     */
+    public void setPlayer (final PlaybackEngine player) {
+        if (myPlayer != null) {
+            detachPlayer(myPlayer);
+        }
+        myPlayer = player;
+        myMediaView.setMediaPlayer(player.getMediaPlayer());
+        if (myTiledView != null) {
+            myTiledView.setMediaPlayer(player.getMediaPlayer());
+        }
+        resetMediaState();
+
+        updateClockListener();
+        mySeekCoordinator = new SeekCoordinator(player);
+        player.volumeProperty().bind(myVolumeSlider.valueProperty().divide(DOUBLE_CONVERT));
+        player.setMute(myMuted);
+        probeMediaFile(player);
+        defineMediaPlayerBehavior(player, myPlayButton);
+
+        Status status = player.getStatus();
+        if (status != Status.UNKNOWN && status != Status.HALTED) {
+            runOnReady(player);
+        }
+        myPlayButton.setText(status == Status.PLAYING ? PAUSE_BUTTON_TEXT : PLAY_BUTTON_TEXT);
+    }
+
+    public PlaybackEngine getPlayer () {
+        return myPlayer;
+    }
 
-        defineMediaPlayerBehavior(player, PLAY_BUTTON);
+    /**
+     * Returns the MediaPlayer being shown, or null if the player does not
+     * decode real media.
+     */
+    public MediaPlayer getMediaPlayer () {
+        return myPlayer.getMediaPlayer();
     }
 
-    private void createMediaPlayer (final MediaPlayer player) {
-        myMediaPlayer = player;
+    private void detachPlayer (final PlaybackEngine player) {
+        if (myListeningToClock) {
+            player.currentTimeProperty().removeListener(myCurrentTimeListener);
+            myListeningToClock = false;
+        }
+        player.volumeProperty().unbind();
+        player.setOnPlaying(null);
+        player.setOnPaused(null);
+        player.setOnReady(null);
+        player.setOnEndOfMedia(null);
+        myLoopController.detach();
+        mySeekCoordinator.detach();
+        MediaBarRefreshScheduler.getShared().cancelRefresh(myRefreshTask);
+        if (myThumbnailGenerator != null) {
+            myThumbnailGenerator.cancel();
+            myThumbnailGenerator = null;
+        }
+    }
+
+    private void resetMediaState () {
+        myDuration = Duration.UNKNOWN;
+        myMediaInfo = null;
+        myReplayPending = false;
+        myResumeFile = null;
+        myResumePosition = null;
+        myStartChosen = false;
+        myJournaledMillis = Double.NEGATIVE_INFINITY;
+        myTimeLabelFormatter.setDuration(myDuration);
+        myThumbnailPreview.setStrip(null, myDuration);
+        mySeekPrefetcher.setMedia(null, null, myDuration);
+        setSubtitles(null);
+        setChapters(ChapterList.EMPTY);
+        myTimeSlider.setValue(0);
+        requestRefresh();
+    }
+
+    private void createMediaPlayer () {
         setStyle(MEDIA_PLAYER_BACKGROUND_COLOR);
-        myMediaView = new MediaView(player);
-        Pane moviePane = new Pane() { };
-        moviePane.getChildren().add(myMediaView);
-        moviePane.setStyle(MOVIE_PANE_BACKGROUND_COLOR);
-        setCenter(moviePane);
+        myMediaView = new MediaView();
+        myMoviePane = new Pane() { };
+        myMoviePane.getChildren().add(myMediaView);
+        myMoviePane.setStyle(MOVIE_PANE_BACKGROUND_COLOR);
+        mySubtitleOverlay = new SubtitleOverlay(myMoviePane);
+        setCenter(myMoviePane);
     }
 
     private void defineMediaBarBehavior () {
@@ -91,59 +215,310 @@ class VideoPlayer extends BorderPane {
         myMediaBar.setPadding(new Insets(PADDING, PADDING, PADDING, PADDING));
     }
 
-    private void createAndDefineVisualComponents (final MediaPlayer player, final Button button) {
+    private void createAndDefineVisualComponents (final Button button) {
         button.setPrefWidth(BUTTON_WIDTH);
-        button.setOnAction(event->playOrPause(player, button));
-        player.currentTimeProperty().addListener(observable->verifyValues());
+        button.setOnAction(event->playOrPause(myPlayer, button));
 
         myTimeSlider = new Slider();
         HBox.setHgrow(myTimeSlider, Priority.ALWAYS);
-        myTimeSlider.valueProperty().addListener(observable->bindPlayerAndSliderTimes(player));
+        myThumbnailPreview = new ThumbnailPreview(myTimeSlider);
+        mySeekPrefetcher = new SeekPrefetcher(myTimeSlider);
+        myTimeSlider.valueProperty().addListener(observable->bindPlayerAndSliderTimes());
+        myTimeSlider.valueChangingProperty().addListener((observable, wasChanging, isChanging)->{
+            if (wasChanging && !isChanging) {
+                finishScrubbing();
+            }
+        });
+
+        myChapterMarkers = new ChapterMarkers(myTimeSlider);
+        HBox.setHgrow(myChapterMarkers, Priority.ALWAYS);
+        myPreviousChapterButton = new Button(PREVIOUS_CHAPTER_BUTTON_TEXT);
+        myPreviousChapterButton.setPrefWidth(CHAPTER_BUTTON_WIDTH);
+        myPreviousChapterButton.setOnAction(event->previousChapter());
+        myNextChapterButton = new Button(NEXT_CHAPTER_BUTTON_TEXT);
+        myNextChapterButton.setPrefWidth(CHAPTER_BUTTON_WIDTH);
+        myNextChapterButton.setOnAction(event->nextChapter());
 
         myTimeLabel = new Label();
         myTimeLabel.setPrefWidth(LABEL_WIDTH);
 
-        myMediaBar.getChildren().addAll(button, new Label(SPACE), myTimeSlider, myTimeLabel);
+        myMediaBar.getChildren().addAll(button, new Label(SPACE), myPreviousChapterButton, myChapterMarkers,
+                                        myNextChapterButton, myTimeLabel);
     }
 
-    private void playOrPause (final MediaPlayer player, final Button button) {
+    private void playOrPause (final PlaybackEngine player, final Button button) {
         Status status = player.getStatus();
         if (status == Status.HALTED || status == Status.UNKNOWN) {
             return;
         }
-        if (mySingleReplayEnabled) { //separate method?
-            mySingleReplayEnabled = false;
-            player.seek(player.getStartTime());
-            playVideo(player, button);
+        if (myReplayPending) {
+            replay(player, button);
             return;
         }
         if (status == Status.PAUSED || status == Status.READY || status == Status.STOPPED) {
             player.play();
+            notifyCommand(PlaybackCommandListener.Command.PLAY, player.getCurrentTime());
         }
         else {
             player.pause();
             //pauseVideo(player, button); //which one is better?
+            notifyCommand(PlaybackCommandListener.Command.PAUSE, player.getCurrentTime());
         }
     }
 
-    private void bindPlayerAndSliderTimes (final MediaPlayer player) {
+    private void replay (final PlaybackEngine player, final Button button) {
+        myReplayPending = false;
+        player.seek(player.getStartTime());
+        playVideo(player, button);
+        notifyCommand(PlaybackCommandListener.Command.PLAY, player.getStartTime());
+    }
+
+    /**
+     * Sets the listener told about the user's play, pause and seek
+     * commands. Passing null removes it.
+     */
+    public void setPlaybackCommandListener (final PlaybackCommandListener listener) {
+        myCommandListener = listener;
+    }
+
+    private void notifyCommand (final PlaybackCommandListener.Command command, final Duration position) {
+        if (myCommandListener != null) {
+            myCommandListener.commandIssued(command, position);
+        }
+    }
+
+    private void requestRefresh () {
+        MediaBarRefreshScheduler.getShared().requestRefresh(myRefreshTask);
+    }
+
+    private void bindPlayerAndSliderTimes () {
         if (myTimeSlider.isValueChanging()) {
-            player.seek(myDuration.multiply(myTimeSlider.getValue() / DOUBLE_CONVERT));
+            Duration target = getSliderTime();
+            mySeekPrefetcher.prefetch(target);
+            mySeekCoordinator.requestSeek(target);
+        }
+    }
+
+    private void finishScrubbing () {
+        if (!myDuration.isUnknown()) {
+            seekDirectly(getSliderTime());
+        }
+    }
+
+    /**
+     * Seeks straight to the target, leaving the replay offer if the media
+     * had ended.
+     */
+    private void seekDirectly (final Duration target) {
+        if (myReplayPending) {
+            myReplayPending = false;
+            myPlayButton.setText(PLAY_BUTTON_TEXT);
+        }
+        mySeekCoordinator.seekNow(target);
+        notifyCommand(PlaybackCommandListener.Command.SEEK, target);
+    }
+
+    /**
+     * Shows the chapters as ticks over the time slider and enables the
+     * chapter buttons if there are any.
+     */
+    public void setChapters (final ChapterList chapters) {
+        myChapterMarkers.setChapters(chapters, myDuration);
+        boolean none = myChapterMarkers.getChapters().size() == 0;
+        myPreviousChapterButton.setDisable(none);
+        myNextChapterButton.setDisable(none);
+    }
+
+    public ChapterList getChapters () {
+        return myChapterMarkers.getChapters();
+    }
+
+    private void nextChapter () {
+        ChapterList chapters = getChapters();
+        int next = chapters.nextAfter(myPlayer.getCurrentTime());
+        if (next >= 0) {
+            seekDirectly(chapters.getStart(next));
+        }
+    }
+
+    private void previousChapter () {
+        ChapterList chapters = getChapters();
+        int previous = chapters.previousBefore(myPlayer.getCurrentTime(), PREVIOUS_CHAPTER_GRACE);
+        seekDirectly(previous >= 0 ? chapters.getStart(previous) : myPlayer.getStartTime());
+    }
+
+    private Duration getSliderTime () {
+        return SliderTimes.toMediaTime(myTimeSlider.getValue(), myDuration);
+    }
+
+    /**
+     * Reads the container header of a local media file on a background
+     * thread, so the media bar is usable before the player is ready, and
+     * then loads its keyframe index for scrubbing and seek prefetching.
+     */
+    private void probeMediaFile (final PlaybackEngine player) {
+        final Path file = player.getSource() == null ? null : MediaSources.toLocalFile(player.getSource());
+        if (file == null) {
+            return;
+        }
+        BackgroundTasks.execute(()->{
+            Duration resumePosition = ResumeJournal.getShared().getPosition(file);
+            Platform.runLater(()->{
+                if (player == myPlayer) {
+                    myResumeFile = file;
+                    updateClockListener();
+                    if (!myStartChosen) {
+                        myResumePosition = resumePosition;
+                    }
+                    resumeIfReady(player);
+                }
+            });
+            loadSubtitles(player, file);
+            try {
+                MetadataCache metadataCache = MetadataCache.getShared();
+                MediaMetadata metadata = metadataCache.get(file);
+                MediaInfo info = metadata != null ? metadata.getInfo() : new Mp4Parser(file).readMediaInfo();
+                Platform.runLater(()->{
+                    if (player == myPlayer) {
+                        applyMediaInfo(file, info);
+                    }
+                });
+                KeyframeIndex index = KeyframeIndexCache.getShared().load(file);
+                if (metadata == null || metadata.getKeyframeCount() != index.size()) {
+                    metadataCache.put(file, info, index.size());
+                }
+                Platform.runLater(()->{
+                    if (player == myPlayer) {
+                        mySeekCoordinator.setKeyframeIndex(index);
+                        mySeekPrefetcher.setMedia(file, index, info.getDuration());
+                    }
+                });
+            }
+            catch (IOException | RuntimeException e) {
+                //the media bar waits for the player and scrubbing seeks exactly, also for malformed files
+            }
+            // after the metadata is cached, where the chapter count is remembered
+            ChapterList chapters = ChapterList.load(file);
+            Platform.runLater(()->{
+                if (player == myPlayer) {
+                    setChapters(chapters);
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads the subtitle file next to the media, if there is one. Must be
+     * called on a background thread.
+     */
+    private void loadSubtitles (final PlaybackEngine player, final Path file) {
+        Path sidecar = SubtitleParser.findSidecar(file);
+        if (sidecar == null) {
+            return;
+        }
+        try {
+            SubtitleTrack track = SubtitleParser.parse(sidecar);
+            Platform.runLater(()->{
+                if (player == myPlayer) {
+                    setSubtitles(track);
+                }
+            });
+        }
+        catch (IOException e) {
+            Reports.failed("read subtitles " + sidecar, e);
+        }
+    }
+
+    /**
+     * Sets the cache whose local copies seek prefetching reads. Passing
+     * null reads the media files themselves.
+     */
+    public void setMediaCache (final MediaCache cache) {
+        mySeekPrefetcher.setMediaCache(cache);
+    }
+
+    /**
+     * Shows the track's cues over the movie. Passing null hides them.
+     * Subtitles keep following the clock while the media bar is hidden.
+     */
+    public void setSubtitles (final SubtitleTrack track) {
+        mySubtitleOverlay.setTrack(track);
+        updateClockListener();
+        if (track != null) {
+            requestRefresh();
+        }
+    }
+
+    public SubtitleTrack getSubtitles () {
+        return mySubtitleOverlay.getTrack();
+    }
+
+    /**
+     * Seeks to the time as soon as the player is ready, instead of resuming
+     * where the media was left off; used to jump to a search result.
+     */
+    public void jumpTo (final Duration time) {
+        myStartChosen = true;
+        myResumePosition = time;
+        resumeIfReady(myPlayer);
+        notifyCommand(PlaybackCommandListener.Command.SEEK, time);
+    }
+
+    /**
+     * Seeks to where the media was left off last time, once the player
+     * knows its duration. A position close to the end is not resumed.
+     */
+    private void resumeIfReady (final PlaybackEngine player) {
+        Status status = player.getStatus();
+        if (myResumePosition == null || status == Status.UNKNOWN || status == Status.HALTED) {
+            return;
+        }
+        Duration duration = player.getDuration();
+        Duration limit = myStartChosen ? duration : duration.subtract(RESUME_END_MARGIN);
+        if (!duration.isUnknown() && myResumePosition.lessThan(limit)) {
+            mySeekCoordinator.seekNow(myResumePosition);
         }
+        myResumePosition = null;
     }
 
-    private void createAndDefineAudioComponents (final MediaPlayer player) {
-        final Button VOLUME_BUTTON = new Button(MUTE_BUTTON_TEXT);
-        VOLUME_BUTTON.setPrefWidth(BUTTON_WIDTH);
-        myMediaBar.getChildren().addAll(VOLUME_BUTTON, new Label(SPACE));
+    /**
+     * Journals the playback position once it has moved far enough, unless
+     * the position to resume from has not been applied yet.
+     */
+    private void journalPosition (final Duration currentTime) {
+        if (myResumeFile == null || myResumePosition != null
+                || Math.abs(currentTime.toMillis() - myJournaledMillis) < JOURNAL_STEP_MILLIS) {
+            return;
+        }
+        ResumeJournal.getShared().record(myResumeFile, currentTime);
+        myJournaledMillis = currentTime.toMillis();
+    }
+
+    private void applyMediaInfo (final Path file, final MediaInfo info) {
+        myMediaInfo = info;
+        if (myDuration.isUnknown()) {
+            myDuration = info.getDuration();
+            myTimeLabelFormatter.setDuration(myDuration);
+            myChapterMarkers.setDuration(myDuration);
+            requestRefresh();
+        }
+        myThumbnailGenerator = new ThumbnailGenerator(file, info);
+        myThumbnailPreview.setStrip(myThumbnailGenerator.getStrip(), info.getDuration());
+        myThumbnailGenerator.start();
+    }
 
-        final Slider VOLUME_SLIDER = new Slider();
-        player.volumeProperty().bind(VOLUME_SLIDER.valueProperty().divide(DOUBLE_CONVERT));
-        VOLUME_BUTTON.setOnAction(event->muteOrUnmute(player, VOLUME_BUTTON, VOLUME_SLIDER));
-        myMediaBar.getChildren().addAll(new Label(VOLUME_LABEL_TEXT), VOLUME_SLIDER);
+    private void createAndDefineAudioComponents () {
+        myVolumeButton = new Button(MUTE_BUTTON_TEXT);
+        myVolumeButton.setPrefWidth(BUTTON_WIDTH);
+        myMediaBar.getChildren().addAll(myVolumeButton, new Label(SPACE));
+
+        myVolumeSlider = new Slider();
+        myVolumeButton.setOnAction(event->muteOrUnmute(myPlayer, myVolumeButton, myVolumeSlider));
+        myMediaBar.getChildren().addAll(new Label(VOLUME_LABEL_TEXT), myVolumeSlider);
     }
 
-    private void muteOrUnmute (final MediaPlayer player, final Button button, final Slider slider) {
+    private void muteOrUnmute (final PlaybackEngine player, final Button button, final Slider slider) {
+        myMuted = !player.isMute();
         if (player.isMute()) {
             player.setMute(false);
             button.setText(MUTE_BUTTON_TEXT);
@@ -156,42 +531,197 @@ class VideoPlayer extends BorderPane {
         }
     }
 
-    private void defineMediaPlayerBehavior (final MediaPlayer player, final Button button) {
-        player.setCycleCount(myCycleCountIsIndefinite ? MediaPlayer.INDEFINITE : 1);
+    private void defineMediaPlayerBehavior (final PlaybackEngine player, final Button button) {
+        myLoopController.attach(player);
         player.setOnPlaying(()->playVideo(player, button));
         player.setOnPaused(()->pauseVideo(player, button));
         player.setOnReady(()->runOnReady(player));
-        if (!myCycleCountIsIndefinite) {
-            player.setOnEndOfMedia(()->displayReplayOption(player, button));
+        player.setOnEndOfMedia(()->handleEndOfMedia(player, button));
+    }
+
+    /**
+     * Loops the media seamlessly instead of offering a replay at its end.
+     * Can be changed at any time, including while playing.
+     */
+    public void setLooping (final boolean looping) {
+        myLoopController.setLooping(looping);
+    }
+
+    /**
+     * Restricts looping to the part of the media between the two times.
+     */
+    public void setLoopPoints (final Duration start, final Duration end) {
+        myLoopController.setLoopPoints(start, end);
+    }
+
+    LoopController getLoopController () {
+        return myLoopController;
+    }
+
+    /**
+     * Replaces the replay option shown at the end of the media, for owners
+     * such as a Playlist that move on to other media instead. Passing null
+     * restores the replay option.
+     */
+    public void setOnEndOfMedia (final Runnable handler) {
+        myEndOfMediaHandler = handler;
+    }
+
+    private void handleEndOfMedia (final PlaybackEngine player, final Button button) {
+        if (myResumeFile != null) {
+            ResumeJournal.getShared().forget(myResumeFile);
+        }
+        if (myEndOfMediaHandler != null) {
+            myEndOfMediaHandler.run();
+        }
+        else {
+            displayReplayOption(player, button);
         }
     }
 
-    private void playVideo (final MediaPlayer player, final Button button) {
+    private void playVideo (final PlaybackEngine player, final Button button) {
         player.play();
         button.setText(PAUSE_BUTTON_TEXT);
     }
 
-    private void pauseVideo (final MediaPlayer player, final Button button) {
+    private void pauseVideo (final PlaybackEngine player, final Button button) {
         player.pause();
-        button.setText(PLAY_BUTTON_TEXT);
+        button.setText(myReplayPending ? REPLAY_BUTTON_TEXT : PLAY_BUTTON_TEXT);
     }
 
-    private void runOnReady (final MediaPlayer player) {
-        myDuration = player.getMedia().getDuration();
+    private void runOnReady (final PlaybackEngine player) {
+        myDuration = player.getDuration();
+        myTimeLabelFormatter.setDuration(myDuration);
+        myChapterMarkers.setDuration(myDuration);
+        resumeIfReady(player);
         Platform.runLater(()->verifyValues());
     }
 
-    private void displayReplayOption (final MediaPlayer player, final Button button) {
-        if (!mySingleReplayEnabled) {
-            mySingleReplayEnabled = true;
+    /**
+     * Pauses at the end of the media and offers to replay it, as happens
+     * when no end-of-media handler is set; for handlers with nothing left
+     * to play.
+     */
+    public void offerReplay () {
+        displayReplayOption(myPlayer, myPlayButton);
+    }
+
+    private void displayReplayOption (final PlaybackEngine player, final Button button) {
+        if (!myReplayPending) {
+            myReplayPending = true;
             player.pause();
             button.setText(REPLAY_BUTTON_TEXT);
         }
     }
 
+    /**
+     * Shows or hides the media bar. A hidden media bar is not refreshed at
+     * all, which leaves only the movie on screen; the subtitles and the
+     * resume journal still follow the clock.
+     */
+    public void setMediaBarVisible (final boolean visible) {
+        myMediaBarVisible = visible;
+        setBottom(visible ? myMediaBar : null);
+        updateClockListener();
+        if (visible) {
+            requestRefresh();
+        }
+    }
+
+    public boolean isMediaBarVisible () {
+        return myMediaBarVisible;
+    }
+
+    /**
+     * Stops the media bar from following the player's clock by itself, for
+     * owners such as a VideoWall that refresh many media bars from a single
+     * tick with refreshMediaBar.
+     */
+    public void setRefreshedExternally (final boolean external) {
+        myRefreshedExternally = external;
+        updateClockListener();
+    }
+
+    public void refreshMediaBar () {
+        if (needsClock()) {
+            verifyValues();
+        }
+    }
+
+    /**
+     * Returns whether anything follows the player's clock: the media bar,
+     * the subtitles or the resume journal.
+     */
+    private boolean needsClock () {
+        return myMediaBarVisible || getSubtitles() != null || myResumeFile != null;
+    }
+
+    /**
+     * Scales the movie to fill the space the VideoPlayer is given, keeping
+     * its aspect ratio, instead of showing it at its natural size.
+     */
+    public void setFitMovieToPane (final boolean fit) {
+        if (fit) {
+            myMoviePane.setMinSize(0, 0);
+            myMediaView.setPreserveRatio(true);
+            myMediaView.fitWidthProperty().bind(myMoviePane.widthProperty());
+            myMediaView.fitHeightProperty().bind(myMoviePane.heightProperty());
+        }
+        else {
+            myMediaView.fitWidthProperty().unbind();
+            myMediaView.fitHeightProperty().unbind();
+            myMediaView.setFitWidth(0);
+            myMediaView.setFitHeight(0);
+        }
+    }
+
+    /**
+     * Spans the movie across a grid of tiles that all show the one player,
+     * each through its own viewport, so one decode feeds every tile. A
+     * single row and column returns to the normal movie pane.
+     */
+    public void setMovieTiles (final int rows, final int columns) {
+        if (myTiledView != null) {
+            myTiledView.setMediaPlayer(null);
+            myTiledView = null;
+        }
+        if (rows == 1 && columns == 1) {
+            myMediaView.setMediaPlayer(myPlayer.getMediaPlayer());
+            setCenter(myMoviePane);
+            return;
+        }
+        myMediaView.setMediaPlayer(null);
+        myTiledView = new TiledMediaView(rows, columns);
+        myTiledView.setStyle(MOVIE_PANE_BACKGROUND_COLOR);
+        myTiledView.setMediaPlayer(myPlayer.getMediaPlayer());
+        setCenter(myTiledView);
+    }
+
+    private void updateClockListener () {
+        boolean listen = needsClock() && !myRefreshedExternally;
+        if (myPlayer == null || listen == myListeningToClock) {
+            return;
+        }
+        if (listen) {
+            myPlayer.currentTimeProperty().addListener(myCurrentTimeListener);
+        }
+        else {
+            myPlayer.currentTimeProperty().removeListener(myCurrentTimeListener);
+            MediaBarRefreshScheduler.getShared().cancelRefresh(myRefreshTask);
+        }
+        myListeningToClock = listen;
+    }
+
     private void verifyValues () {
-        Duration currentTime = myMediaPlayer.getCurrentTime();
-        myTimeLabel.setText(calculateElapsedTime(currentTime, myDuration));
+        Duration currentTime = myPlayer.getCurrentTime();
+        journalPosition(currentTime);
+        mySubtitleOverlay.update(currentTime);
+        if (!myMediaBarVisible) {
+            return;
+        }
+        if (myTimeLabelFormatter.update(currentTime)) {
+            myTimeLabel.setText(myTimeLabelFormatter.getText());
+        }
         myTimeSlider.setDisable(myDuration.isUnknown());
 
         boolean durationValid = myDuration.greaterThan(Duration.ZERO) ? true : false;
@@ -199,32 +729,15 @@ class VideoPlayer extends BorderPane {
         boolean sliderValueChanging = !myTimeSlider.isValueChanging() ? true : false;
 
         if (durationValid && sliderActive && sliderValueChanging) {
-            double duration = myDuration.toMillis();
-            double doubleTime = currentTime.divide(duration).toMillis();
-            double timeSliderValue = doubleTime * DOUBLE_CONVERT;
-            myTimeSlider.setValue(timeSliderValue);
+            myTimeSlider.setValue(SliderTimes.toSliderValue(currentTime, myDuration));
         }
     }
 
-    private static String calculateElapsedTime (Duration elapsed, Duration videoDuration) {
-        int seconds = (int)Math.floor(elapsed.toSeconds());
-
-        int hours = seconds / (MINUTES_PER_HOUR * SECONDS_PER_MINUTE);
-        seconds %= MINUTES_PER_HOUR * SECONDS_PER_MINUTE;
-        int minutes = seconds / SECONDS_PER_MINUTE;
-        seconds %= SECONDS_PER_MINUTE;
-
-        return formatTime(videoDuration, hours, minutes, seconds);
+    SeekCoordinator getSeekCoordinator () {
+        return mySeekCoordinator;
     }
 
-    private static String formatTime (Duration duration, int intHours, int intMin, int intSec) {
-        int seconds = (int)Math.floor(duration.toSeconds());
-
-        int hours = seconds / (MINUTES_PER_HOUR * SECONDS_PER_MINUTE);
-        seconds %= MINUTES_PER_HOUR * SECONDS_PER_MINUTE;
-        int minutes = seconds / SECONDS_PER_MINUTE;
-        seconds %= SECONDS_PER_MINUTE;
-
-        return String.format(TIME_LABEL_TEXT, intHours, intMin, intSec, hours, minutes, seconds);
+    MediaInfo getMediaInfo () {
+        return myMediaInfo;
     }
 }
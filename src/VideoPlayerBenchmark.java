@@ -0,0 +1,128 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.util.Duration;
+
+/**
+ * The VideoPlayerBenchmark measures the paths the VideoPlayer runs on
+ * every clock tick or slider change: formatting the time label, mapping
+ * the current time to a slider value, and mapping a slider value back to
+ * a (keyframe-snapped) seek target. Only javafx.util.Duration is used, so
+ * it runs headless without starting the FX toolkit.
+ *
+ * Each benchmark is warmed up, then timed over several rounds. Reported
+ * are nanoseconds per operation, bytes allocated per operation (from the
+ * thread's allocation counter) and the collections seen during
+ * measurement, so allocation regressions show up as clearly as slowdowns.
+ *
+ * Run with: java VideoPlayerBenchmark [operationsPerRound]
+ *
+ */
+public class VideoPlayerBenchmark {
+
+    private static final int DEFAULT_OPERATIONS = 2_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final double TICK_MILLIS = 1000.0 / 60;
+    private static final String LEGACY_TIME_LABEL_TEXT = "%d:%02d:%02d / %d:%02d:%02d";
+
+    private static final Duration DURATION = Duration.hours(2).add(Duration.seconds(3725));
+
+    private static volatile Object ourSink;
+    private static volatile double ourDoubleSink;
+
+    private interface Operation {
+        void run (int iteration);
+    }
+
+    public static void main (String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        final TimeLabelFormatter formatter = new TimeLabelFormatter();
+        formatter.setDuration(DURATION);
+        final KeyframeIndex keyframes = createKeyframeIndex();
+
+        System.out.printf("%-28s %12s %12s %8s%n", "benchmark", "ns/op", "bytes/op", "gc");
+        run(threads, operations, "timeLabel.stringFormat", i->ourSink = formatLegacy(tick(i), DURATION));
+        run(threads, operations, "timeLabel.formatter", i->{
+            if (formatter.update(tick(i))) {
+                ourSink = formatter.getText();
+            }
+        });
+        run(threads, operations, "slider.fromCurrentTime",
+            i->ourDoubleSink = SliderTimes.toSliderValue(tick(i), DURATION));
+        run(threads, operations, "slider.toSeekTarget", i->ourSink = SliderTimes.toMediaTime(sliderValue(i), DURATION));
+        run(threads, operations, "slider.toKeyframeTarget",
+            i->ourSink = keyframes.snap(SliderTimes.toMediaTime(sliderValue(i), DURATION)));
+    }
+
+    private static void run (final com.sun.management.ThreadMXBean threads, final int operations,
+                             final String name, final Operation operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRound(operations, operation);
+        }
+        long threadId = Thread.currentThread().getId();
+        long gcBefore = countCollections();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            runRound(operations, operation);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        long total = (long)operations * MEASURED_ROUNDS;
+        System.out.printf("%-28s %12.2f %12.2f %8d%n", name, elapsed / (double)total,
+                          bytes / (double)total, countCollections() - gcBefore);
+    }
+
+    private static void runRound (final int operations, final Operation operation) {
+        for (int i = 0; i < operations; i++) {
+            operation.run(i);
+        }
+    }
+
+    private static Duration tick (final int iteration) {
+        return Duration.millis(iteration * TICK_MILLIS % DURATION.toMillis());
+    }
+
+    private static double sliderValue (final int iteration) {
+        return iteration % 10_000 / 100.0;
+    }
+
+    private static long countCollections () {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static KeyframeIndex createKeyframeIndex () {
+        List<Long> times = new ArrayList<>();
+        for (long millis = 0; millis < DURATION.toMillis(); millis += 2002) {
+            times.add(millis);
+        }
+        long[] timesMillis = new long[times.size()];
+        long[] offsets = new long[times.size()];
+        for (int i = 0; i < timesMillis.length; i++) {
+            timesMillis[i] = times.get(i);
+            offsets[i] = i * 1_000_000L;
+        }
+        return new KeyframeIndex(timesMillis, offsets);
+    }
+
+    /**
+     * The label formatting the VideoPlayer used before TimeLabelFormatter,
+     * kept as the baseline.
+     */
+    private static String formatLegacy (final Duration elapsed, final Duration duration) {
+        int seconds = (int)Math.floor(elapsed.toSeconds());
+        int total = (int)Math.floor(duration.toSeconds());
+        return String.format(LEGACY_TIME_LABEL_TEXT, seconds / 3600, seconds % 3600 / 60, seconds % 60,
+                             total / 3600, total % 3600 / 60, total % 60);
+    }
+}
@@ -1,18 +1,44 @@
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.scene.Group;
 import javafx.scene.Scene;
-import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /**
  * @author $cotty $haw
  * 
  * The VideoViewer tests playing video files on a MediaPlayer. If the
  * user loads any video file with any allowed file extensions to this
- * package, it should play.
+ * package, it should play. Video files given on the command line are
+ * played in order as a playlist instead.
+ * 
+ * Local files are streamed to the players by an embedded MediaServer, so
+ * the theater controls how media is read; resources inside a jar are
+ * played as they are. The playing file and the next few are copied to a
+ * local MediaCache ahead of playback, and served from there once copied.
+ * 
+ * Before the first item plays, its header and first seconds are read into
+ * the page cache by a MediaPrewarmer, unless --prewarm=false is given. The
+ * time from startup to the first frame is printed either way, so the two
+ * can be compared on a cold cache.
+ * 
+ * With --search, the subtitles next to the media are indexed and searched
+ * for the given words; the matches are printed, and the playlist starts
+ * from the best one at the time it is spoken.
  * 
  */
 public class VideoViewer extends Application {
@@ -21,26 +47,205 @@ public class VideoViewer extends Application {
     private static final int MY_MOVIE_THEATER_HEIGHT = 900;
     private static final String MEDIA_PLAYER_TEST_FILE = "mongols.mp4";
     private static final String MY_MOVIE_THEATER_TITLE = "$cotty $haw's Movie Theater";
+    private static final String PREWARM_PARAMETER = "prewarm";
+    private static final String LIBRARY_PARAMETER = "library";
+    private static final String SEARCH_PARAMETER = "search";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final MediaPlayerPool myPlayerPool = new MediaPlayerPool();
+    private MediaServer myMediaServer;
+    private MediaCache myMediaCache;
+    private final MediaPrewarmer myPrewarmer = new MediaPrewarmer();
+    private final SubtitleSearchIndex mySearchIndex = new SubtitleSearchIndex();
+    private SubtitleSearchResult myStartResult;
 
     public static void main (String[] args) {
         launch(args);
     }
 
     @Override
-    public void start (Stage movieTheater) {
+    public void start (Stage movieTheater) throws IOException {
+        final long startNanos = System.nanoTime();
+        myMediaServer = new MediaServer(0);
+        myMediaCache = new MediaCache();
+        myMediaServer.setCache(myMediaCache);
         movieTheater.setTitle(MY_MOVIE_THEATER_TITLE);
         Group root = new Group();
         Scene scene = new Scene(root, MY_MOVIE_THEATER_WIDTH, MY_MOVIE_THEATER_HEIGHT);
 
-        final URL RESOURCE = getClass().getResource(MEDIA_PLAYER_TEST_FILE);
-        final Media MEDIA = new Media(RESOURCE.toString());
-        MediaPlayer mediaPlayer = new MediaPlayer(MEDIA);
-        mediaPlayer.setAutoPlay(true);
+        loadMediaSources().thenApply(sources->searchSubtitles(sources))
+                          .thenCompose(sources->prewarm(sources.get(0)).handle((bytes, error)->sources))
+                          .exceptionally(error->{
+                              Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                              Reports.failed("prepare the media list, playing the given media instead", cause);
+                              return getMediaSources();
+                          })
+                          .thenAccept(sources->Platform.runLater(()->startPlaylist(scene, sources, startNanos)));
+
+        movieTheater.setScene(scene);
+        movieTheater.show();
+    }
 
+    private void startPlaylist (final Scene scene, final List<String> sources, final long startNanos) {
+        MediaPlayer mediaPlayer = myPlayerPool.acquire(sources.get(0));
         VideoPlayer videoPlayer = new VideoPlayer(mediaPlayer);
         scene.setRoot(videoPlayer);
+        reportFirstFrame(mediaPlayer, startNanos);
 
-        movieTheater.setScene(scene);
-        movieTheater.show();
+        Playlist playlist = new Playlist(videoPlayer, myPlayerPool, sources);
+        playlist.setMediaCache(myMediaCache);
+        playlist.play();
+        if (myStartResult != null) {
+            videoPlayer.jumpTo(myStartResult.getTime());
+        }
+    }
+
+    /**
+     * Searches the subtitles of the local sources for the words given with
+     * --search and prints the matches. Returns the sources rotated to start
+     * with the media of the best match, or unchanged if nothing matched.
+     */
+    private List<String> searchSubtitles (final List<String> sources) {
+        String query = getParameters().getNamed().get(SEARCH_PARAMETER);
+        if (query == null) {
+            return sources;
+        }
+        List<Path> files = new ArrayList<>();
+        for (String source : sources) {
+            Path file = MediaSources.toLocalFile(source);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        mySearchIndex.update(files);
+        long start = System.nanoTime();
+        List<SubtitleSearchResult> results = mySearchIndex.search(query, SubtitleSearchIndex.DEFAULT_RESULT_COUNT);
+        Reports.report("Search \"%s\": %d matches in %.1f ms over %d cues of %d files (indexed in %.1f ms)",
+                       query, results.size(), (System.nanoTime() - start) / NANOS_PER_MILLI,
+                       mySearchIndex.getCueCount(), mySearchIndex.getFileCount(),
+                       mySearchIndex.getLastUpdateNanos() / NANOS_PER_MILLI);
+        for (SubtitleSearchResult result : results) {
+            Reports.report("  " + result);
+        }
+        if (results.isEmpty()) {
+            return sources;
+        }
+        // the index keeps absolute paths
+        for (int i = 0; i < sources.size(); i++) {
+            Path file = MediaSources.toLocalFile(sources.get(i));
+            if (file != null && results.get(0).getMedia().equals(file.toAbsolutePath())) {
+                myStartResult = results.get(0);
+                List<String> rotated = new ArrayList<>(sources.subList(i, sources.size()));
+                rotated.addAll(sources.subList(0, i));
+                return rotated;
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Reads the start of the media into the page cache, from the cached
+     * copy if there is one since that is what will be served.
+     */
+    private CompletableFuture<Long> prewarm (final String source) {
+        Path file = MediaSources.toLocalFile(source);
+        if (file == null || !isPrewarmEnabled()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        Path copy = myMediaCache.peek(file);
+        return myPrewarmer.prewarm(copy != null ? copy : file);
+    }
+
+    private boolean isPrewarmEnabled () {
+        return !Boolean.FALSE.toString().equals(getParameters().getNamed().get(PREWARM_PARAMETER));
+    }
+
+    private void reportFirstFrame (final MediaPlayer player, final long startNanos) {
+        player.currentTimeProperty().addListener(new ChangeListener<Duration>() {
+            @Override
+            public void changed (ObservableValue<? extends Duration> observable, Duration oldTime,
+                                 Duration newTime) {
+                if (newTime.greaterThan(Duration.ZERO)) {
+                    player.currentTimeProperty().removeListener(this);
+                    double startup = (System.nanoTime() - startNanos) / NANOS_PER_MILLI;
+                    if (isPrewarmEnabled()) {
+                        Reports.report("Startup to first frame: %.1f ms with prewarm (%d bytes in %.1f ms)",
+                                       startup, myPrewarmer.getLastBytes(),
+                                       myPrewarmer.getLastNanos() / NANOS_PER_MILLI);
+                    }
+                    else {
+                        Reports.report("Startup to first frame: %.1f ms without prewarm", startup);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the media files given on the command line; failing that, the
+     * videos of the library under the roots given with --library (separated
+     * like a class path), scanned in the background; failing that, the test
+     * file. Local files are served from the MediaServer.
+     */
+    private CompletableFuture<List<String>> loadMediaSources () {
+        String roots = getParameters().getNamed().get(LIBRARY_PARAMETER);
+        if (!getParameters().getUnnamed().isEmpty() || roots == null) {
+            return CompletableFuture.completedFuture(getMediaSources());
+        }
+        return CompletableFuture.supplyAsync(()->getLibrarySources(roots), BackgroundTasks::execute);
+    }
+
+    private List<String> getLibrarySources (final String roots) {
+        List<Path> paths = new ArrayList<>();
+        for (String root : roots.split(File.pathSeparator)) {
+            paths.add(Paths.get(root));
+        }
+        MediaLibrary library = new MediaLibrary(paths);
+        try {
+            int files = library.scan();
+            Reports.report("Library: %d files in %.1f ms (%d parsed, %d unchanged, %d failed)", files,
+                           library.getLastScanNanos() / NANOS_PER_MILLI, library.getLastParsedCount(),
+                           library.getLastReusedCount(), library.getLastFailedCount());
+        }
+        catch (IOException e) {
+            Reports.report("Library scan failed, using the last index: " + e.getMessage());
+        }
+        List<String> sources = new ArrayList<>();
+        for (LibraryEntry entry : library.getEntries()) {
+            MediaInfo info = entry.getInfo();
+            if (info != null && info.getWidth() > 0) {
+                sources.add(myMediaServer.publish(entry.getPath()));
+            }
+        }
+        return sources.isEmpty() ? getMediaSources() : sources;
+    }
+
+    /**
+     * Returns the media files given on the command line, or the test file
+     * if there are none, served from the MediaServer where possible.
+     */
+    private List<String> getMediaSources () {
+        List<String> sources = new ArrayList<>();
+        for (String file : getParameters().getUnnamed()) {
+            sources.add(myMediaServer.publish(Paths.get(file).toAbsolutePath()));
+        }
+        if (sources.isEmpty()) {
+            final URL RESOURCE = getClass().getResource(MEDIA_PLAYER_TEST_FILE);
+            Path file = MediaSources.toLocalFile(RESOURCE.toString());
+            sources.add(file != null ? myMediaServer.publish(file) : RESOURCE.toString());
+        }
+        return sources;
+    }
+
+    @Override
+    public void stop () throws IOException {
+        myPlayerPool.disposeAll();
+        if (myMediaServer != null) {
+            myMediaServer.close();
+        }
+        if (myMediaCache != null) {
+            myMediaCache.close();
+        }
+        ResumeJournal.getShared().close();
     }
 }
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.RowConstraints;
+
+/**
+ * The VideoWall lays out VideoPlayers in a grid of equally sized tiles and
+ * refreshes all of their media bars from one shared tick, instead of each
+ * tile listening to its own player's clock. The FX thread then does one
+ * pass over the tiles per tick, and a wall can hide every media bar to
+ * show only the movies, in which case only the tiles' subtitles and resume
+ * journals keep following the tick.
+ *
+ * The tick rate defaults to the pulse rate and can be lowered for large
+ * walls, where a media bar a few frames behind is not noticeable.
+ *
+ */
+class VideoWall extends GridPane {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double PERCENT = 100.0;
+
+    private final int myColumns;
+    private final List<VideoPlayer> myTiles = new ArrayList<>();
+    private boolean myMediaBarsVisible = true;
+    private long myMinimumIntervalNanos = 0;
+    private long myLastTickNanos = 0;
+    private long myLastTickDurationNanos;
+    private long myTickCount;
+
+    private final AnimationTimer myTimer = new AnimationTimer() {
+        @Override
+        public void handle (long now) {
+            tick(now);
+        }
+    };
+
+    public VideoWall (final int columns) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("A wall needs at least one column");
+        }
+        myColumns = columns;
+        for (int column = 0; column < columns; column++) {
+            ColumnConstraints constraints = new ColumnConstraints();
+            constraints.setPercentWidth(PERCENT / columns);
+            constraints.setHgrow(Priority.ALWAYS);
+            getColumnConstraints().add(constraints);
+        }
+    }
+
+    /**
+     * Adds a tile in the next free cell. The wall takes over refreshing its
+     * media bar and fits its movie to the tile.
+     */
+    public void addTile (final VideoPlayer tile) {
+        int index = myTiles.size();
+        myTiles.add(tile);
+        tile.setRefreshedExternally(true);
+        tile.setMediaBarVisible(myMediaBarsVisible);
+        tile.setFitMovieToPane(true);
+        add(tile, index % myColumns, index / myColumns);
+        updateRows();
+        if (myTiles.size() == 1) {
+            myTimer.start();
+        }
+    }
+
+    public void removeTile (final VideoPlayer tile) {
+        if (!myTiles.remove(tile)) {
+            return;
+        }
+        getChildren().clear();
+        for (int i = 0; i < myTiles.size(); i++) {
+            add(myTiles.get(i), i % myColumns, i / myColumns);
+        }
+        updateRows();
+        tile.setRefreshedExternally(false);
+        tile.setFitMovieToPane(false);
+        if (myTiles.isEmpty()) {
+            myTimer.stop();
+        }
+    }
+
+    public List<VideoPlayer> getTiles () {
+        return Collections.unmodifiableList(myTiles);
+    }
+
+    public void setMediaBarsVisible (final boolean visible) {
+        myMediaBarsVisible = visible;
+        for (VideoPlayer tile : myTiles) {
+            tile.setMediaBarVisible(visible);
+        }
+    }
+
+    public boolean isMediaBarsVisible () {
+        return myMediaBarsVisible;
+    }
+
+    /**
+     * Caps how often the media bars are refreshed. A rate of zero or less
+     * refreshes them on every pulse.
+     */
+    public void setMaxRefreshRate (final double refreshesPerSecond) {
+        myMinimumIntervalNanos = refreshesPerSecond > 0 ? (long)(NANOS_PER_SECOND / refreshesPerSecond) : 0;
+    }
+
+    /**
+     * Returns how long the last refresh of every tile took on the FX thread.
+     */
+    public long getLastTickNanos () {
+        return myLastTickDurationNanos;
+    }
+
+    /**
+     * Returns how many refreshes of every tile have run, so a caller
+     * polling getLastTickNanos can tell a new one from one it has seen.
+     */
+    public long getTickCount () {
+        return myTickCount;
+    }
+
+    private void tick (final long now) {
+        if (now - myLastTickNanos < myMinimumIntervalNanos) {
+            return;
+        }
+        myLastTickNanos = now;
+        long start = System.nanoTime();
+        for (VideoPlayer tile : myTiles) {
+            tile.refreshMediaBar();
+        }
+        myLastTickDurationNanos = System.nanoTime() - start;
+        myTickCount++;
+    }
+
+    private void updateRows () {
+        int rows = (myTiles.size() + myColumns - 1) / myColumns;
+        getRowConstraints().clear();
+        for (int row = 0; row < rows; row++) {
+            RowConstraints constraints = new RowConstraints();
+            constraints.setPercentHeight(PERCENT / rows);
+            constraints.setVgrow(Priority.ALWAYS);
+            getRowConstraints().add(constraints);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The WatchPartyFollower keeps a local player in step with a
+ * WatchPartyLeader. It pings the leader regularly and estimates the offset
+ * between the two clocks the way NTP does: with t1 and t4 the follower's
+ * send and receive times and t2 and t3 the leader's,
+ *
+ *   offset = ((t2 - t1) + (t3 - t4)) / 2,  delay = (t4 - t1) - (t3 - t2)
+ *
+ * keeping the estimate from the sample with the smallest delay among the
+ * recent ones, since that one suffered the least queueing.
+ *
+ * With the offset, every state from the leader tells where the leader is
+ * right now. The follower plays or pauses to match, seeks when it is far
+ * off, and otherwise nudges its rate so small errors melt away unseen,
+ * like the SyncController does for players in one JVM. The error at each
+ * state is its sync error, reported in milliseconds; errors large enough
+ * to need a seek (after joining, or after the leader seeks) are counted
+ * as seek corrections instead, so the statistics show the steady state.
+ * The local position is read through a PlaybackClock at the same instant
+ * the leader's position is projected to, so the player's last time update
+ * is not taken for where it is now.
+ *
+ * A datagram from a new leader session means the leader restarted: its
+ * sequence numbers and its clock started over, so the follower forgets
+ * the last sequence it applied and its clock samples.
+ *
+ * The player is only touched through the given executor, which for a real
+ * player is Platform::runLater.
+ *
+ */
+class WatchPartyFollower implements Closeable {
+
+    public static final long PING_INTERVAL_MILLIS = 1000;
+
+    private static final int OFFSET_SAMPLES = 8;
+    private static final int INITIAL_PINGS = 4;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double RATE_THRESHOLD_MILLIS = 15;
+    private static final double SEEK_THRESHOLD_MILLIS = 250;
+    private static final double PAUSED_SEEK_THRESHOLD_MILLIS = 40;
+    private static final double CORRECTION_WINDOW_MILLIS = 2000;
+    private static final double MAX_RATE_ADJUSTMENT = 0.05;
+
+    private final PlaybackEngine myPlayer;
+    private final Executor myPlayerExecutor;
+    private final DatagramChannel myChannel;
+    private final ScheduledExecutorService myPinger =
+            Executors.newSingleThreadScheduledExecutor(BackgroundTasks.newThreadFactory("watch-party-ping"));
+    private final ByteBuffer myPingBuffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+    private final long[] mySampleDelays = new long[OFFSET_SAMPLES];
+    private final long[] mySampleOffsets = new long[OFFSET_SAMPLES];
+    private PlaybackClock myPlaybackClock;
+    private LongSupplier myClock = System::nanoTime;
+    private int mySampleCount;
+    private int myPingSequence;
+    private int myLeaderSession;
+    private int myLastStateSequence;
+    private volatile boolean myOffsetKnown;
+    private volatile long myOffsetNanos;
+    private volatile long myDelayNanos;
+
+    // read by any thread, written on the player executor
+    private volatile double myLastSyncErrorMillis;
+    private volatile double myMaxSyncErrorMillis;
+    private volatile double myTotalSyncErrorMillis;
+    private volatile long mySyncSamples;
+    private volatile long mySeekCorrections;
+
+    public WatchPartyFollower (final PlaybackEngine player, final InetSocketAddress leader,
+                               final Executor playerExecutor) throws IOException {
+        myPlayer = player;
+        myPlayerExecutor = playerExecutor;
+        myChannel = DatagramChannel.open();
+        myChannel.connect(leader);
+    }
+
+    public void start () {
+        myPlayerExecutor.execute(()->myPlaybackClock = new PlaybackClock(myPlayer, ()->myClock.getAsLong()));
+        Thread receiver = BackgroundTasks.newThreadFactory("watch-party-follower").newThread(this::receive);
+        receiver.start();
+        for (int i = 0; i < INITIAL_PINGS; i++) {
+            myPinger.schedule(this::ping, i * PING_INTERVAL_MILLIS / INITIAL_PINGS / 2, TimeUnit.MILLISECONDS);
+        }
+        myPinger.scheduleAtFixedRate(this::ping, PING_INTERVAL_MILLIS, PING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close () throws IOException {
+        myPinger.shutdownNow();
+        myChannel.close();
+        myPlayerExecutor.execute(()->{
+            if (myPlaybackClock != null) {
+                myPlaybackClock.dispose();
+            }
+        });
+    }
+
+    /**
+     * Replaces the clock used for every time this follower measures, so
+     * that tests can give it a clock far from the leader's.
+     */
+    void setClock (final LongSupplier clock) {
+        myClock = clock;
+    }
+
+    public boolean isOffsetKnown () {
+        return myOffsetKnown;
+    }
+
+    /**
+     * Returns how far the leader's clock is ahead of this follower's.
+     */
+    public double getClockOffsetMillis () {
+        return myOffsetNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the round trip delay of the sample the offset came from.
+     */
+    public double getRoundTripMillis () {
+        return myDelayNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the last measured difference between this player's position
+     * and the leader's, positive when this player is ahead.
+     */
+    public double getLastSyncErrorMillis () {
+        return myLastSyncErrorMillis;
+    }
+
+    public double getMaxSyncErrorMillis () {
+        return myMaxSyncErrorMillis;
+    }
+
+    public double getMeanSyncErrorMillis () {
+        long samples = mySyncSamples;
+        return samples > 0 ? myTotalSyncErrorMillis / samples : 0;
+    }
+
+    public long getSyncSampleCount () {
+        return mySyncSamples;
+    }
+
+    public long getSeekCorrectionCount () {
+        return mySeekCorrections;
+    }
+
+    private void ping () {
+        myPingBuffer.clear();
+        WatchPartyMessage.ping(++myPingSequence, myClock.getAsLong()).write(myPingBuffer);
+        myPingBuffer.flip();
+        try {
+            myChannel.write(myPingBuffer);
+        }
+        catch (IOException e) {
+            // the leader is not up yet, or went away; keep pinging
+        }
+    }
+
+    private void receive () {
+        ByteBuffer buffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        while (myChannel.isOpen()) {
+            try {
+                buffer.clear();
+                myChannel.receive(buffer);
+                long received = myClock.getAsLong();
+                buffer.flip();
+                WatchPartyMessage message = WatchPartyMessage.read(buffer);
+                if (message == null || message.getType() == WatchPartyMessage.PING) {
+                    continue;
+                }
+                if (message.getSession() != myLeaderSession) {
+                    startLeaderSession(message.getSession());
+                }
+                if (message.getType() == WatchPartyMessage.PONG) {
+                    addOffsetSample(message, received);
+                }
+                else if (message.getType() == WatchPartyMessage.STATE
+                        && message.getSequence() > myLastStateSequence) {
+                    myLastStateSequence = message.getSequence();
+                    myPlayerExecutor.execute(()->apply(message));
+                }
+            }
+            catch (ClosedChannelException e) {
+                return;
+            }
+            catch (IOException | RuntimeException e) {
+                // the leader is unreachable until it starts; wait for the next datagram
+            }
+        }
+    }
+
+    private void startLeaderSession (final int session) {
+        myLeaderSession = session;
+        myLastStateSequence = 0;
+        mySampleCount = 0;
+        myOffsetKnown = false;
+    }
+
+    private void addOffsetSample (final WatchPartyMessage pong, final long received) {
+        long sent = pong.getFollowerSendNanos();
+        long delay = (received - sent) - (pong.getLeaderSendNanos() - pong.getLeaderReceiveNanos());
+        long offset = ((pong.getLeaderReceiveNanos() - sent) + (pong.getLeaderSendNanos() - received)) / 2;
+        int slot = mySampleCount++ % OFFSET_SAMPLES;
+        mySampleDelays[slot] = delay;
+        mySampleOffsets[slot] = offset;
+
+        int best = 0;
+        for (int i = 1; i < Math.min(mySampleCount, OFFSET_SAMPLES); i++) {
+            if (mySampleDelays[i] < mySampleDelays[best]) {
+                best = i;
+            }
+        }
+        myDelayNanos = mySampleDelays[best];
+        myOffsetNanos = mySampleOffsets[best];
+        myOffsetKnown = true;
+    }
+
+    private void apply (final WatchPartyMessage state) {
+        Status status = myPlayer.getStatus();
+        if (status == Status.UNKNOWN || status == Status.HALTED) {
+            return;
+        }
+        double rate = state.getRate();
+        if (state.isPlaying() && status != Status.PLAYING) {
+            myPlayer.play();
+        }
+        else if (!state.isPlaying() && status == Status.PLAYING) {
+            myPlayer.pause();
+        }
+        if (!myOffsetKnown || !myPlaybackClock.isTimeKnown()) {
+            return;
+        }
+
+        long now = myClock.getAsLong();
+        double expected = state.getPositionMillis();
+        if (state.isPlaying()) {
+            expected += (now + myOffsetNanos - state.getLeaderSampleNanos()) / NANOS_PER_MILLI * rate;
+        }
+        double error = myPlaybackClock.getTimeMillis(now) - expected;
+
+        if (!state.isPlaying()) {
+            if (Math.abs(error) >= PAUSED_SEEK_THRESHOLD_MILLIS) {
+                myPlayer.seek(Duration.millis(expected));
+                mySeekCorrections++;
+            }
+            return;
+        }
+        if (Math.abs(error) >= SEEK_THRESHOLD_MILLIS) {
+            myPlayer.seek(Duration.millis(expected));
+            myPlayer.setRate(rate);
+            mySeekCorrections++;
+            return;
+        }
+        record(error);
+        if (Math.abs(error) >= RATE_THRESHOLD_MILLIS) {
+            double adjustment = Math.max(-MAX_RATE_ADJUSTMENT,
+                                         Math.min(MAX_RATE_ADJUSTMENT, error / CORRECTION_WINDOW_MILLIS));
+            myPlayer.setRate(rate * (1 - adjustment));
+        }
+        else if (myPlayer.getRate() != rate) {
+            myPlayer.setRate(rate);
+        }
+    }
+
+    private void record (final double errorMillis) {
+        double magnitude = Math.abs(errorMillis);
+        myLastSyncErrorMillis = errorMillis;
+        myMaxSyncErrorMillis = Math.max(myMaxSyncErrorMillis, magnitude);
+        myTotalSyncErrorMillis += magnitude;
+        mySyncSamples++;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.util.Duration;
+
+/**
+ * The WatchPartyHarness runs a watch party of SimulatedPlaybackEngines
+ * without a screen, one party member per JVM, so the sync protocol can be
+ * measured on loopback or across machines.
+ *
+ * The leader plays, seeks, pauses and resumes on a fixed script, and its
+ * clock is shifted by a few seconds so the followers have a real offset
+ * to estimate. Each follower starts at a wrong position and its player
+ * runs slightly fast or slow, as if its decoder drifted. Once a second
+ * every follower prints its clock offset, round trip and sync error.
+ *
+ * Run with: java WatchPartyHarness leader [port] [seconds]
+ *           java WatchPartyHarness follower host [port] [seconds]
+ *           java WatchPartyHarness loopback [followers] [seconds]
+ *
+ * The loopback mode runs the leader itself and starts each follower in a
+ * JVM of its own, with the same class and module paths.
+ *
+ */
+public class WatchPartyHarness {
+
+    private static final Duration MEDIA_DURATION = Duration.minutes(30);
+    private static final long TICK_MILLIS = 10;
+    private static final int DEFAULT_FOLLOWERS = 3;
+    private static final int DEFAULT_SECONDS = 20;
+    private static final double MAX_DRIFT = 0.005;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final SimulatedPlaybackEngine myEngine = new SimulatedPlaybackEngine(MEDIA_DURATION);
+    private final ScheduledExecutorService myPlayerThread =
+            Executors.newSingleThreadScheduledExecutor(BackgroundTasks.newThreadFactory("player"));
+    private final Random myRandom = new Random();
+    private long myLastTickNanos;
+
+    public static void main (String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "loopback";
+        WatchPartyHarness harness = new WatchPartyHarness();
+        switch (mode) {
+            case "leader":
+                harness.runLeader(intArgument(args, 1, WatchPartyLeader.DEFAULT_PORT),
+                                  intArgument(args, 2, DEFAULT_SECONDS), null);
+                break;
+            case "follower":
+                harness.runFollower(args[1], intArgument(args, 2, WatchPartyLeader.DEFAULT_PORT),
+                                    intArgument(args, 3, DEFAULT_SECONDS));
+                break;
+            case "loopback":
+                int followers = intArgument(args, 1, DEFAULT_FOLLOWERS);
+                int seconds = intArgument(args, 2, DEFAULT_SECONDS);
+                harness.runLeader(WatchPartyLeader.DEFAULT_PORT, seconds,
+                                  launchFollowers(followers, WatchPartyLeader.DEFAULT_PORT, seconds));
+                break;
+            default:
+                System.err.println("Unknown mode " + mode + "; use leader, follower or loopback");
+        }
+        System.exit(0);
+    }
+
+    private static int intArgument (final String[] args, final int index, final int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+
+    private static List<Process> launchFollowers (final int count, final int port, final int seconds)
+        throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--add-modules");
+            command.add("javafx.media");
+        }
+        command.add(WatchPartyHarness.class.getName());
+        command.add("follower");
+        command.add("127.0.0.1");
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(seconds));
+
+        List<Process> followers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            followers.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        return followers;
+    }
+
+    private void startClock (final double speed) {
+        myLastTickNanos = System.nanoTime();
+        myPlayerThread.execute(myEngine::makeReady);
+        myPlayerThread.scheduleAtFixedRate(()->{
+            long now = System.nanoTime();
+            myEngine.advance(Duration.millis((now - myLastTickNanos) / 1e6 * speed));
+            myLastTickNanos = now;
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void runLeader (final int port, final int seconds, final List<Process> followers) throws Exception {
+        startClock(1.0);
+        long clockShift = (long)((myRandom.nextDouble() * 10 - 5) * NANOS_PER_SECOND);
+        try (WatchPartyLeader leader = new WatchPartyLeader(myEngine, port, myPlayerThread)) {
+            leader.setClock(()->System.nanoTime() + clockShift);
+            leader.start();
+            System.out.printf("leader on port %d, clock shifted by %.1f ms%n", leader.getPort(), clockShift / 1e6);
+
+            schedule(leader, 1, PlaybackCommandListener.Command.PLAY, null);
+            schedule(leader, seconds / 3, PlaybackCommandListener.Command.SEEK, Duration.minutes(10));
+            schedule(leader, seconds / 2, PlaybackCommandListener.Command.PAUSE, null);
+            schedule(leader, seconds / 2 + 2, PlaybackCommandListener.Command.PLAY, null);
+            if (followers == null) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(seconds + 1));
+            }
+            else {
+                for (Process follower : followers) {
+                    follower.waitFor();
+                }
+            }
+            System.out.printf("leader done: %d followers, %d states sent%n",
+                              leader.getFollowerCount(), leader.getStatesSent());
+        }
+    }
+
+    private void schedule (final WatchPartyLeader leader, final int second,
+                           final PlaybackCommandListener.Command command, final Duration target) {
+        myPlayerThread.schedule(()->{
+            switch (command) {
+                case PLAY:
+                    myEngine.play();
+                    break;
+                case PAUSE:
+                    myEngine.pause();
+                    break;
+                default:
+                    myEngine.seek(target);
+                    break;
+            }
+            Duration position = target != null ? target : myEngine.getCurrentTime();
+            System.out.printf("leader %s at %.0f ms%n", command, position.toMillis());
+            leader.commandIssued(command, position);
+        }, second, TimeUnit.SECONDS);
+    }
+
+    private void runFollower (final String host, final int port, final int seconds) throws Exception {
+        double speed = 1 + (myRandom.nextDouble() * 2 - 1) * MAX_DRIFT;
+        startClock(speed);
+        myPlayerThread.execute(()->myEngine.seek(Duration.seconds(myRandom.nextInt(60))));
+        long pid = ProcessHandle.current().pid();
+        try (WatchPartyFollower follower =
+                new WatchPartyFollower(myEngine, new InetSocketAddress(host, port), myPlayerThread)) {
+            follower.start();
+            System.out.printf("follower %d: player speed %.4f%n", pid, speed);
+            for (int second = 1; second <= seconds; second++) {
+                Thread.sleep(1000);
+                System.out.printf("follower %d: offset %.3f ms, round trip %.3f ms, sync error %.2f ms%n",
+                                  pid, follower.getClockOffsetMillis(), follower.getRoundTripMillis(),
+                                  follower.getLastSyncErrorMillis());
+            }
+            System.out.printf("follower %d done: mean sync error %.2f ms, max %.2f ms over %d states, %d seeks%n",
+                              pid, follower.getMeanSyncErrorMillis(), follower.getMaxSyncErrorMillis(),
+                              follower.getSyncSampleCount(), follower.getSeekCorrectionCount());
+        }
+    }
+}
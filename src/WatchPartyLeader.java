@@ -0,0 +1,164 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javafx.scene.media.MediaPlayer.Status;
+import javafx.util.Duration;
+
+/**
+ * The WatchPartyLeader shares one player's playback with the followers of
+ * a watch party on the local network. Followers join by pinging it over
+ * UDP; it answers every ping with its clock readings so followers can
+ * estimate the offset between the two clocks, and it sends them its state
+ * (playing or paused, position, rate, and when the position was sampled)
+ * whenever the user plays, pauses or seeks, and again at a fixed interval
+ * so a lost datagram or a late joiner is corrected within one heartbeat.
+ * The position is read through a PlaybackClock, so it is the position at
+ * the moment it is stamped with, not the player's last time update.
+ *
+ * Attach it to a VideoPlayer as its PlaybackCommandListener. The player
+ * is only read through the given executor, which for a real player is
+ * Platform::runLater.
+ *
+ */
+class WatchPartyLeader implements PlaybackCommandListener, Closeable {
+
+    public static final int DEFAULT_PORT = 47800;
+    public static final long HEARTBEAT_MILLIS = 500;
+
+    private static final long FOLLOWER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final PlaybackEngine myPlayer;
+    private final Executor myPlayerExecutor;
+    private final DatagramChannel myChannel;
+    private final Map<SocketAddress, Long> myFollowers = new ConcurrentHashMap<>();
+    private final ByteBuffer mySendBuffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+    private final ScheduledExecutorService myHeartbeat =
+            Executors.newSingleThreadScheduledExecutor(BackgroundTasks.newThreadFactory("watch-party-heartbeat"));
+    private final int mySession = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    private PlaybackClock myPlaybackClock;
+    private LongSupplier myClock = System::nanoTime;
+    private int mySequence;
+    private volatile long myStatesSent;
+
+    public WatchPartyLeader (final PlaybackEngine player, final int port, final Executor playerExecutor)
+        throws IOException {
+        myPlayer = player;
+        myPlayerExecutor = playerExecutor;
+        myChannel = DatagramChannel.open();
+        myChannel.bind(new InetSocketAddress(port));
+    }
+
+    public void start () {
+        myPlayerExecutor.execute(()->myPlaybackClock = new PlaybackClock(myPlayer, ()->myClock.getAsLong()));
+        Thread receiver = BackgroundTasks.newThreadFactory("watch-party-leader").newThread(this::receive);
+        receiver.start();
+        myHeartbeat.scheduleAtFixedRate(()->myPlayerExecutor.execute(this::publishCurrentState),
+                                        0, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close () throws IOException {
+        myHeartbeat.shutdownNow();
+        myChannel.close();
+        myPlayerExecutor.execute(()->{
+            if (myPlaybackClock != null) {
+                myPlaybackClock.dispose();
+            }
+        });
+    }
+
+    public int getPort () throws IOException {
+        return ((InetSocketAddress)myChannel.getLocalAddress()).getPort();
+    }
+
+    public int getFollowerCount () {
+        return myFollowers.size();
+    }
+
+    public long getStatesSent () {
+        return myStatesSent;
+    }
+
+    /**
+     * Replaces the clock used for every time this leader sends, so that
+     * tests can give it a clock far from the followers'.
+     */
+    void setClock (final LongSupplier clock) {
+        myClock = clock;
+    }
+
+    @Override
+    public void commandIssued (final Command command, final Duration position) {
+        boolean playing = command == Command.PLAY
+                || (command == Command.SEEK && myPlayer.getStatus() == Status.PLAYING);
+        publish(playing, position.toMillis(), myClock.getAsLong());
+    }
+
+    private void publishCurrentState () {
+        long now = myClock.getAsLong();
+        publish(myPlayer.getStatus() == Status.PLAYING, myPlaybackClock.getTimeMillis(now), now);
+    }
+
+    private synchronized void publish (final boolean playing, final double positionMillis, final long now) {
+        if (myFollowers.isEmpty() || !myChannel.isOpen()) {
+            return;
+        }
+        myFollowers.values().removeIf(lastSeen->now - lastSeen > FOLLOWER_TIMEOUT_NANOS);
+        WatchPartyMessage state = WatchPartyMessage.state(mySession, ++mySequence, playing,
+                                                          positionMillis, myPlayer.getRate(), now);
+        for (SocketAddress follower : myFollowers.keySet()) {
+            send(state, follower, mySendBuffer);
+        }
+        myStatesSent++;
+    }
+
+    private void receive () {
+        ByteBuffer receiveBuffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        ByteBuffer replyBuffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        while (myChannel.isOpen()) {
+            try {
+                receiveBuffer.clear();
+                SocketAddress sender = myChannel.receive(receiveBuffer);
+                long received = myClock.getAsLong();
+                receiveBuffer.flip();
+                WatchPartyMessage message = WatchPartyMessage.read(receiveBuffer);
+                if (message == null || message.getType() != WatchPartyMessage.PING) {
+                    continue;
+                }
+                myFollowers.put(sender, received);
+                send(WatchPartyMessage.pong(mySession, message, received, myClock.getAsLong()), sender, replyBuffer);
+            }
+            catch (ClosedChannelException e) {
+                return;
+            }
+            catch (IOException | RuntimeException e) {
+                Reports.failed("receive a watch party message", e);
+            }
+        }
+    }
+
+    private void send (final WatchPartyMessage message, final SocketAddress target, final ByteBuffer buffer) {
+        buffer.clear();
+        message.write(buffer);
+        buffer.flip();
+        try {
+            myChannel.send(buffer, target);
+        }
+        catch (IOException e) {
+            Reports.failed("send a watch party message to " + target, e);
+        }
+    }
+}
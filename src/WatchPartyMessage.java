@@ -0,0 +1,183 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The WatchPartyMessage is the wire format of the watch party protocol.
+ * Every datagram starts with a magic number, a message type, the sender's
+ * session and a sequence number, followed by fixed-width fields:
+ *
+ * PING  - the follower's send time (t1)
+ * PONG  - t1 echoed, the leader's receive time (t2) and send time (t3)
+ * STATE - whether the leader is playing, its position in milliseconds,
+ *         its rate, and the leader clock time the position was sampled at
+ *
+ * Clock times are System.nanoTime readings of the sending JVM; only
+ * differences between them are meaningful, which is all NTP-style offset
+ * estimation needs. A leader picks a new session every time it starts, so
+ * followers can tell a restarted leader, whose sequence numbers and clock
+ * start over, from a stale datagram. Followers send session 0.
+ *
+ */
+final class WatchPartyMessage {
+
+    public static final int MAX_SIZE = 64;
+
+    public static final byte PING = 1;
+    public static final byte PONG = 2;
+    public static final byte STATE = 3;
+
+    private static final int MAGIC = 0x57505432; // "WPT2"
+    private static final int HEADER_SIZE = 13;
+    private static final int PING_SIZE = HEADER_SIZE + 8;
+    private static final int PONG_SIZE = HEADER_SIZE + 24;
+    private static final int STATE_SIZE = HEADER_SIZE + 25;
+
+    private byte myType;
+    private int mySession;
+    private int mySequence;
+    private long myFollowerSendNanos;
+    private long myLeaderReceiveNanos;
+    private long myLeaderSendNanos;
+    private boolean myPlaying;
+    private double myPositionMillis;
+    private double myRate;
+    private long myLeaderSampleNanos;
+
+    public static WatchPartyMessage ping (final int sequence, final long followerSendNanos) {
+        WatchPartyMessage message = new WatchPartyMessage(PING, 0, sequence);
+        message.myFollowerSendNanos = followerSendNanos;
+        return message;
+    }
+
+    public static WatchPartyMessage pong (final int session, final WatchPartyMessage ping,
+                                          final long leaderReceiveNanos, final long leaderSendNanos) {
+        WatchPartyMessage message = new WatchPartyMessage(PONG, session, ping.mySequence);
+        message.myFollowerSendNanos = ping.myFollowerSendNanos;
+        message.myLeaderReceiveNanos = leaderReceiveNanos;
+        message.myLeaderSendNanos = leaderSendNanos;
+        return message;
+    }
+
+    public static WatchPartyMessage state (final int session, final int sequence, final boolean playing,
+                                           final double positionMillis, final double rate,
+                                           final long leaderSampleNanos) {
+        WatchPartyMessage message = new WatchPartyMessage(STATE, session, sequence);
+        message.myPlaying = playing;
+        message.myPositionMillis = positionMillis;
+        message.myRate = rate;
+        message.myLeaderSampleNanos = leaderSampleNanos;
+        return message;
+    }
+
+    private WatchPartyMessage (final byte type, final int session, final int sequence) {
+        myType = type;
+        mySession = session;
+        mySequence = sequence;
+    }
+
+    /**
+     * Reads a message from the buffer, or returns null if the datagram is
+     * not a watch party message or is too short for its type.
+     */
+    public static WatchPartyMessage read (final ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (length < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            return null;
+        }
+        byte type = buffer.get();
+        if (length < sizeOf(type)) {
+            return null;
+        }
+        WatchPartyMessage message = new WatchPartyMessage(type, buffer.getInt(), buffer.getInt());
+        switch (type) {
+            case PING:
+                message.myFollowerSendNanos = buffer.getLong();
+                return message;
+            case PONG:
+                message.myFollowerSendNanos = buffer.getLong();
+                message.myLeaderReceiveNanos = buffer.getLong();
+                message.myLeaderSendNanos = buffer.getLong();
+                return message;
+            case STATE:
+                message.myPlaying = buffer.get() != 0;
+                message.myPositionMillis = buffer.getDouble();
+                message.myRate = buffer.getDouble();
+                message.myLeaderSampleNanos = buffer.getLong();
+                return message;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the size of a message of the type, or MAX_SIZE + 1 for a
+     * type that does not exist.
+     */
+    private static int sizeOf (final byte type) {
+        switch (type) {
+            case PING:
+                return PING_SIZE;
+            case PONG:
+                return PONG_SIZE;
+            case STATE:
+                return STATE_SIZE;
+            default:
+                return MAX_SIZE + 1;
+        }
+    }
+
+    public void write (final ByteBuffer buffer) {
+        buffer.putInt(MAGIC).put(myType).putInt(mySession).putInt(mySequence);
+        switch (myType) {
+            case PING:
+                buffer.putLong(myFollowerSendNanos);
+                break;
+            case PONG:
+                buffer.putLong(myFollowerSendNanos).putLong(myLeaderReceiveNanos).putLong(myLeaderSendNanos);
+                break;
+            default:
+                buffer.put((byte)(myPlaying ? 1 : 0)).putDouble(myPositionMillis).putDouble(myRate)
+                      .putLong(myLeaderSampleNanos);
+                break;
+        }
+    }
+
+    public byte getType () {
+        return myType;
+    }
+
+    public int getSession () {
+        return mySession;
+    }
+
+    public int getSequence () {
+        return mySequence;
+    }
+
+    public long getFollowerSendNanos () {
+        return myFollowerSendNanos;
+    }
+
+    public long getLeaderReceiveNanos () {
+        return myLeaderReceiveNanos;
+    }
+
+    public long getLeaderSendNanos () {
+        return myLeaderSendNanos;
+    }
+
+    public boolean isPlaying () {
+        return myPlaying;
+    }
+
+    public double getPositionMillis () {
+        return myPositionMillis;
+    }
+
+    public double getRate () {
+        return myRate;
+    }
+
+    public long getLeaderSampleNanos () {
+        return myLeaderSampleNanos;
+    }
+}
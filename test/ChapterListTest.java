@@ -0,0 +1,125 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import javafx.util.Duration;
+
+public class ChapterListTest {
+
+    private static final Duration GRACE = Duration.seconds(3);
+
+    private final ChapterList myChapters =
+            new ChapterList(new long[] { 60_000, 0, 120_000 }, new String[] { "Middle", "Start", "End" });
+
+    @Test
+    public void sortsChaptersByStart () {
+        assertEquals(3, myChapters.size());
+        assertEquals("Start", myChapters.getTitle(0));
+        assertEquals("Middle", myChapters.getTitle(1));
+        assertEquals(Duration.millis(120_000), myChapters.getStart(2));
+    }
+
+    @Test
+    public void findsTheChapterPlaying () {
+        assertEquals(0, myChapters.indexAt(Duration.ZERO));
+        assertEquals(0, myChapters.indexAt(Duration.millis(59_999)));
+        assertEquals(1, myChapters.indexAt(Duration.millis(60_000)));
+        assertEquals(2, myChapters.indexAt(Duration.hours(1)));
+        ChapterList late = new ChapterList(new long[] { 5_000 }, new String[] { "Late" });
+        assertEquals(-1, late.indexAt(Duration.ZERO));
+    }
+
+    @Test
+    public void findsTheNextChapter () {
+        assertEquals(1, myChapters.nextAfter(Duration.millis(10_000)));
+        assertEquals(2, myChapters.nextAfter(Duration.millis(60_000)));
+        assertEquals(-1, myChapters.nextAfter(Duration.millis(130_000)));
+    }
+
+    @Test
+    public void goesBackToTheChapterStartOrTheOneBefore () {
+        assertEquals(1, myChapters.previousBefore(Duration.millis(70_000), GRACE));
+        assertEquals(0, myChapters.previousBefore(Duration.millis(61_000), GRACE));
+        assertEquals(0, myChapters.previousBefore(Duration.millis(1_000), GRACE));
+        assertEquals(-1, ChapterList.EMPTY.previousBefore(Duration.millis(1_000), GRACE));
+    }
+
+    @Test
+    public void readsTimeAndTitleSidecars () throws IOException {
+        ChapterList chapters = readSidecar("0:00 Opening\n\n0:12:30 The Siege\nnot a chapter\n1:02:03.500\n");
+        assertEquals(3, chapters.size());
+        assertEquals("The Siege", chapters.getTitle(1));
+        assertEquals(Duration.millis(750_000), chapters.getStart(1));
+        assertEquals("", chapters.getTitle(2));
+        assertEquals(Duration.millis(3_723_500), chapters.getStart(2));
+    }
+
+    @Test
+    public void readsOgmSidecars () throws IOException {
+        ChapterList chapters = readSidecar("CHAPTER01=00:00:00.000\nCHAPTER01NAME=Opening\n"
+                + "CHAPTER02=00:12:30.000\nCHAPTER02NAME=The Siege\nCHAPTER03NAME=No time\n");
+        assertEquals(2, chapters.size());
+        assertEquals("Opening", chapters.getTitle(0));
+        assertEquals("The Siege", chapters.getTitle(1));
+        assertEquals(Duration.millis(750_000), chapters.getStart(1));
+    }
+
+    @Test
+    public void prefersTheSidecarNextToTheMedia () throws IOException {
+        Path directory = Files.createTempDirectory("chapters");
+        Path media = directory.resolve("movie.mp4");
+        Path sidecar = directory.resolve("movie" + ChapterList.SIDECAR_EXTENSION);
+        MetadataCache metadataCache = new MetadataCache(directory.resolve("metadata.db"));
+        try {
+            Files.write(media, new byte[16]);
+            assertEquals(0, ChapterList.load(media, metadataCache).size());
+            Files.write(sidecar, "0:00 Opening\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("Opening", ChapterList.load(media, metadataCache).getTitle(0));
+        }
+        finally {
+            Files.deleteIfExists(directory.resolve("metadata.db"));
+            Files.deleteIfExists(sidecar);
+            Files.deleteIfExists(media);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void remembersHowManyChaptersAContainerHolds () throws IOException {
+        Path directory = Files.createTempDirectory("chapters");
+        Path media = directory.resolve("movie.mp4");
+        MetadataCache metadataCache = new MetadataCache(directory.resolve("metadata.db"));
+        try {
+            Files.write(media, new byte[16]);
+            metadataCache.putChapterCount(media, 3);
+            assertNull(metadataCache.get(media));
+            metadataCache.put(media, new MediaInfo(Duration.seconds(10), 640, 360, 25, "avc1", "mp4a"), 2);
+            assertEquals(-1, metadataCache.get(media).getChapterCount());
+            metadataCache.putChapterCount(media, 0);
+            assertEquals(0, metadataCache.get(media).getChapterCount());
+            assertEquals(0, ChapterList.load(media, metadataCache).size());
+        }
+        finally {
+            Files.deleteIfExists(directory.resolve("metadata.db"));
+            Files.deleteIfExists(media);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static ChapterList readSidecar (final String text) throws IOException {
+        Path sidecar = Files.createTempFile("chapters", ChapterList.SIDECAR_EXTENSION);
+        try {
+            Files.write(sidecar, text.getBytes(StandardCharsets.UTF_8));
+            return ChapterList.readSidecar(sidecar);
+        }
+        finally {
+            Files.delete(sidecar);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class SubtitleParserTest {
+
+    private static SubtitleTrack parse (final String text) throws IOException {
+        return SubtitleParser.parse(new BufferedReader(new StringReader(text)));
+    }
+
+    private static long parseTime (final String text) {
+        return SubtitleParser.parseTime(text, 0, text.length());
+    }
+
+    @Test
+    public void parsesSubRipTimes () {
+        assertEquals(3_723_456, parseTime("01:02:03,456"));
+        assertEquals(0, parseTime("00:00:00,000"));
+    }
+
+    @Test
+    public void parsesWebVttTimesWithAndWithoutHours () {
+        assertEquals(3_723_456, parseTime("01:02:03.456"));
+        assertEquals(62_500, parseTime("01:02.500"));
+    }
+
+    @Test
+    public void scalesShortFractions () {
+        assertEquals(1_500, parseTime("00:01.5"));
+        assertEquals(1_050, parseTime("00:01.05"));
+    }
+
+    @Test
+    public void acceptsTimesWithoutMilliseconds () {
+        assertEquals(750_000, parseTime("0:12:30"));
+        assertEquals(90_000, parseTime("1:30"));
+    }
+
+    @Test
+    public void parsesOnlyBetweenThePositions () {
+        String line = "00:00:01,000 --> 00:00:02,500 align:start";
+        int arrow = line.indexOf("-->");
+        assertEquals(1_000, SubtitleParser.parseTime(line, 0, arrow));
+        assertEquals(2_500, SubtitleParser.parseTime(line, arrow + 3, line.length()));
+    }
+
+    @Test
+    public void rejectsMalformedTimes () {
+        assertEquals(-1, parseTime(""));
+        assertEquals(-1, parseTime("12"));
+        assertEquals(-1, parseTime("ab:cd"));
+        assertEquals(-1, parseTime(":30"));
+        assertEquals(-1, parseTime("1:2:3:4"));
+    }
+
+    @Test
+    public void readsSubRipCues () throws IOException {
+        SubtitleTrack track = parse("1\n00:00:01,000 --> 00:00:02,000\nHello\nthere\n\n"
+                + "2\n00:00:03,000 --> 00:00:04,000\n<i>General</i> Kenobi\n");
+        assertEquals(2, track.getCueCount());
+        assertEquals("Hello\nthere", track.getCueText(0));
+        assertEquals(3_000, track.getCueStart(1));
+        assertEquals(4_000, track.getCueEnd(1));
+        assertEquals("General Kenobi", track.getCueText(1));
+    }
+
+    @Test
+    public void skipsWebVttMetadataBlocks () throws IOException {
+        SubtitleTrack track = parse("\uFEFFWEBVTT\n\nNOTE a note\n00:01.000 --> 00:02.000\n\n"
+                + "STYLE\n::cue { color: red }\n\n"
+                + "intro\n00:01.000 --> 00:02.000 line:0\nFish &amp; chips\n");
+        assertEquals(1, track.getCueCount());
+        assertEquals("Fish & chips", track.getCueText(0));
+    }
+
+    @Test
+    public void skipsMalformedAndEmptyCues () throws IOException {
+        SubtitleTrack track = parse("1\n00:00:05,000 --> 00:00:04,000\nEnds before it starts\n\n"
+                + "2\nnot a timing line\nNo timing\n\n"
+                + "3\n00:00:06,000 --> garbage\nBad end\n\n"
+                + "4\n00:00:07,000 --> 00:00:08,000\n\n"
+                + "5\n00:00:09,000 --> 00:00:10,000\nKept\n");
+        assertEquals(1, track.getCueCount());
+        assertEquals("Kept", track.getCueText(0));
+    }
+
+    @Test
+    public void readsAnEmptyFile () throws IOException {
+        SubtitleTrack track = parse("");
+        assertEquals(0, track.getCueCount());
+        assertNull(track.getText(track.findSegment(0, -1), 0));
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SubtitleTrackTest {
+
+    private static SubtitleTrack track (final long[] starts, final long[] ends, final String... texts) {
+        return new SubtitleTrack(starts, ends, texts, texts.length);
+    }
+
+    private static String textAt (final SubtitleTrack track, final double millis) {
+        return track.getText(track.findSegment(millis, -1), millis);
+    }
+
+    @Test
+    public void showsNothingBetweenCues () {
+        SubtitleTrack track = track(new long[] { 1000, 3000 }, new long[] { 2000, 4000 }, "one", "two");
+        assertNull(textAt(track, 500));
+        assertEquals("one", textAt(track, 1000));
+        assertEquals("one", textAt(track, 1999));
+        assertNull(textAt(track, 2000));
+        assertEquals("two", textAt(track, 3500));
+        assertNull(textAt(track, 4000));
+    }
+
+    @Test
+    public void joinsOverlappingCues () {
+        SubtitleTrack track = track(new long[] { 1000, 1500 }, new long[] { 3000, 2000 }, "long", "short");
+        assertEquals("long", textAt(track, 1200));
+        assertEquals("long\nshort", textAt(track, 1500));
+        assertEquals("long\nshort", textAt(track, 1999));
+        assertEquals("long", textAt(track, 2000));
+        assertEquals("long", textAt(track, 2999));
+        assertNull(textAt(track, 3000));
+    }
+
+    @Test
+    public void sortsCuesByStart () {
+        SubtitleTrack track = track(new long[] { 3000, 1000 }, new long[] { 4000, 2000 }, "second", "first");
+        assertEquals("first", track.getCueText(0));
+        assertEquals(1000, track.getCueStart(0));
+        assertEquals("second", textAt(track, 3000));
+    }
+
+    @Test
+    public void mergesTouchingCuesWithTheSameText () {
+        SubtitleTrack track = track(new long[] { 1000, 2000 }, new long[] { 2000, 3000 }, "same", "same");
+        int segment = track.findSegment(1000, -1);
+        assertEquals(segment, track.findSegment(2500, -1));
+        assertEquals("same", track.getText(segment, 2500));
+    }
+
+    @Test
+    public void findsTheSegmentFromAnyHint () {
+        SubtitleTrack track = track(new long[] { 0, 1000, 2000, 3000 }, new long[] { 500, 1500, 2500, 3500 },
+                                    "a", "b", "c", "d");
+        int expected = track.findSegment(2200, -1);
+        for (int hint = -1; hint < 8; hint++) {
+            assertEquals(expected, track.findSegment(2200, hint));
+        }
+        assertEquals("c", track.getText(expected, 2200));
+    }
+}
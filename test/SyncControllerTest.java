@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.util.Duration;
+import org.junit.Test;
+
+public class SyncControllerTest {
+
+    private static final long STEP_MILLIS = 10;
+    private static final long UPDATE_MILLIS = 100;
+    private static final long SYNC_MILLIS = 250;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final SimulatedPlaybackEngine myMaster = engine();
+    private final SimulatedPlaybackEngine myFollower = engine();
+    private final SyncController myController = new SyncController(null);
+    private long myNowMillis;
+    private long myMasterShownMillis;
+    private long myFollowerShownMillis;
+
+    private static SimulatedPlaybackEngine engine () {
+        SimulatedPlaybackEngine engine = new SimulatedPlaybackEngine(Duration.minutes(10));
+        engine.makeReady();
+        return engine;
+    }
+
+    /**
+     * Plays both engines for the given time. Like MediaPlayers, each one
+     * only shows its new time every UPDATE_MILLIS, the follower half an
+     * update after the master, and the controller synchronizes them every
+     * SYNC_MILLIS in between.
+     */
+    private void play (final long millis) {
+        myController.setClock(()->myNowMillis * NANOS_PER_MILLI);
+        List<PlaybackEngine> followers = Arrays.asList(myFollower);
+        myMaster.play();
+        myFollower.play();
+        for (long end = myNowMillis + millis; myNowMillis < end; ) {
+            myNowMillis += STEP_MILLIS;
+            if (myNowMillis % UPDATE_MILLIS == 0) {
+                myMaster.advance(Duration.millis(myNowMillis - myMasterShownMillis));
+                myMasterShownMillis = myNowMillis;
+            }
+            if (myNowMillis % UPDATE_MILLIS == UPDATE_MILLIS / 2) {
+                myFollower.advance(Duration.millis(myNowMillis - myFollowerShownMillis));
+                myFollowerShownMillis = myNowMillis;
+            }
+            if (myNowMillis % SYNC_MILLIS == 0) {
+                myController.synchronize(myMaster, followers);
+            }
+        }
+    }
+
+    @Test
+    public void ignoresTheOffsetBetweenTimeUpdates () {
+        play(10_000);
+        assertEquals(0, myController.getRateCorrectionCount());
+        assertEquals(0, myController.getSeekCorrectionCount());
+        assertTrue(myController.getLastMaxDriftMillis() < 1);
+    }
+
+    @Test
+    public void absorbsSmallDriftWithTheRate () {
+        myFollower.seek(Duration.millis(120));
+        play(20_000);
+        assertTrue(myController.getRateCorrectionCount() > 0);
+        assertEquals(0, myController.getSeekCorrectionCount());
+        assertTrue(myController.getLastMaxDriftMillis() < 15);
+        assertEquals(myMaster.getRate(), myFollower.getRate(), 0);
+    }
+
+    @Test
+    public void seeksOnLargeDrift () {
+        myMaster.seek(Duration.seconds(30));
+        play(10_000);
+        assertEquals(1, myController.getSeekCorrectionCount());
+        assertTrue(myController.getLastMaxDriftMillis() < 15);
+        assertEquals(myMaster.getRate(), myFollower.getRate(), 0);
+    }
+}
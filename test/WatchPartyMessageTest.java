@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class WatchPartyMessageTest {
+
+    private static WatchPartyMessage roundTrip (final WatchPartyMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        message.write(buffer);
+        buffer.flip();
+        return WatchPartyMessage.read(buffer);
+    }
+
+    @Test
+    public void roundTripsPings () {
+        WatchPartyMessage ping = roundTrip(WatchPartyMessage.ping(7, 123_456_789L));
+        assertEquals(WatchPartyMessage.PING, ping.getType());
+        assertEquals(0, ping.getSession());
+        assertEquals(7, ping.getSequence());
+        assertEquals(123_456_789L, ping.getFollowerSendNanos());
+    }
+
+    @Test
+    public void roundTripsPongs () {
+        WatchPartyMessage ping = WatchPartyMessage.ping(3, 100);
+        WatchPartyMessage pong = roundTrip(WatchPartyMessage.pong(42, ping, 200, 300));
+        assertEquals(WatchPartyMessage.PONG, pong.getType());
+        assertEquals(42, pong.getSession());
+        assertEquals(3, pong.getSequence());
+        assertEquals(100, pong.getFollowerSendNanos());
+        assertEquals(200, pong.getLeaderReceiveNanos());
+        assertEquals(300, pong.getLeaderSendNanos());
+    }
+
+    @Test
+    public void roundTripsStates () {
+        WatchPartyMessage state = roundTrip(WatchPartyMessage.state(42, 9, true, 1234.5, 1.25, -5));
+        assertEquals(WatchPartyMessage.STATE, state.getType());
+        assertEquals(42, state.getSession());
+        assertEquals(9, state.getSequence());
+        assertTrue(state.isPlaying());
+        assertEquals(1234.5, state.getPositionMillis(), 0);
+        assertEquals(1.25, state.getRate(), 0);
+        assertEquals(-5, state.getLeaderSampleNanos());
+        assertFalse(roundTrip(WatchPartyMessage.state(42, 10, false, 0, 1, 0)).isPlaying());
+    }
+
+    @Test
+    public void ignoresShortDatagrams () {
+        WatchPartyMessage[] messages = { WatchPartyMessage.ping(1, 1),
+                                         WatchPartyMessage.pong(1, WatchPartyMessage.ping(1, 1), 2, 3),
+                                         WatchPartyMessage.state(1, 1, true, 1, 1, 1) };
+        ByteBuffer buffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        for (WatchPartyMessage message : messages) {
+            buffer.clear();
+            message.write(buffer);
+            int length = buffer.position();
+            for (int truncated = 0; truncated < length; truncated++) {
+                buffer.position(0).limit(truncated);
+                assertNull(WatchPartyMessage.read(buffer));
+            }
+        }
+    }
+
+    @Test
+    public void ignoresOtherDatagrams () {
+        ByteBuffer buffer = ByteBuffer.allocate(WatchPartyMessage.MAX_SIZE);
+        buffer.putInt(0x12345678).put(WatchPartyMessage.PING).putInt(0).putInt(1).putLong(1).flip();
+        assertNull(WatchPartyMessage.read(buffer));
+
+        WatchPartyMessage.ping(1, 1).write(buffer.clear());
+        buffer.put(4, (byte)99).flip();
+        assertNull(WatchPartyMessage.read(buffer));
+    }
+}